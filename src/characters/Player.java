@@ -1,5 +1,6 @@
 package characters;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -7,7 +8,7 @@ public class Player extends Character {
     private int health;
     private int stamina; // decreases when working, may be refilled by energy drinks
     private double money;
-    private Map<String, Integer> inventory; // item & count
+    private Map<String, Integer> inventory; // item & count, copy-on-write so snapshots can share it
     int reputation;
     private int shiftsWorked;
 
@@ -16,7 +17,7 @@ public class Player extends Character {
         this.health = 100;
         this.stamina = 100;
         this.money = 200.0; // starting wages/savings
-        this.inventory = new HashMap<>();
+        this.inventory = Collections.emptyMap();
         this.reputation = 80;
         this.shiftsWorked = 0;
     }
@@ -37,16 +38,21 @@ public class Player extends Character {
     public double getMoney() { return money; }
     public int getShiftsWorked() { return shiftsWorked; }
 
-    // Inventory & economy
+    // Inventory & economy. Changes swap in a new map rather than editing the current one, which may be
+    // shared with snapshots.
     public void addItem(String item, int count) {
-        inventory.put(item, inventory.getOrDefault(item, 0) + count);
+        Map<String, Integer> next = new HashMap<>(inventory);
+        next.put(item, inventory.getOrDefault(item, 0) + count);
+        inventory = Collections.unmodifiableMap(next);
     }
 
     public boolean removeItem(String item, int count) {
         int have = inventory.getOrDefault(item, 0);
         if (have < count) return false;
-        if (have == count) inventory.remove(item);
-        else inventory.put(item, have - count);
+        Map<String, Integer> next = new HashMap<>(inventory);
+        if (have == count) next.remove(item);
+        else next.put(item, have - count);
+        inventory = Collections.unmodifiableMap(next);
         return true;
     }
 
@@ -70,7 +76,21 @@ public class Player extends Character {
         setReputation(reputation + delta);
     }
 
-    // Handles player changes of working a shift while the Game class manages other game logic
+    // Immutable copy of the current state; cheap, since the inventory map is shared rather than copied
+    public PlayerState snapshot() {
+        return new PlayerState(name, health, stamina, money, shiftsWorked, reputation, inventory);
+    }
+
+    // Rebuild a Player from a snapshot (used when saving one)
+    public static Player fromState(PlayerState s) {
+        Player p = fromJson(s.getName(), s.getHealth(), s.getStamina(), s.getMoney(), s.getShiftsWorked());
+        p.reputation = s.getReputation();
+        p.inventory = s.getInventory();
+        return p;
+    }
+
+    // Handles player changes of working a shift while the Game class manages other game logic. PlayerPopulation
+    // does the same for many players at once; keep the two in step.
     public double workShift(Manager managerOnDuty, double demandFactor) {
         // Calculate earnings based on reputation and stamina
         if (stamina < 10) {
@@ -0,0 +1,34 @@
+package characters;
+
+import java.util.Map;
+
+// Immutable point-in-time copy of a Player, taken with Player.snapshot(). Safe to hand to another thread:
+// nothing here changes after construction, and the inventory is the unmodifiable map the Player had at
+// the time (Player swaps in a new one on every change instead of editing it).
+public final class PlayerState {
+    private final String name;
+    private final int health;
+    private final int stamina;
+    private final double money;
+    private final int shiftsWorked;
+    private final int reputation;
+    private final Map<String, Integer> inventory;
+
+    PlayerState(String name, int health, int stamina, double money, int shiftsWorked, int reputation, Map<String, Integer> inventory) {
+        this.name = name;
+        this.health = health;
+        this.stamina = stamina;
+        this.money = money;
+        this.shiftsWorked = shiftsWorked;
+        this.reputation = reputation;
+        this.inventory = inventory;
+    }
+
+    public String getName() { return name; }
+    public int getHealth() { return health; }
+    public int getStamina() { return stamina; }
+    public double getMoney() { return money; }
+    public int getShiftsWorked() { return shiftsWorked; }
+    public int getReputation() { return reputation; }
+    public Map<String, Integer> getInventory() { return inventory; }
+}
@@ -0,0 +1,342 @@
+package game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import characters.Player;
+
+// Compact binary save layout, an alternative to the pretty-printed JSON. Small integers are varints,
+// strings are length-prefixed UTF-8 and demandHistory is written as a packed run of raw doubles instead of
+// one boxed JSON number per shift. Both directions stream, so nothing is buffered beyond the stream's own
+// buffer.
+//
+// Since version 2 a save starts with a fixed 64-byte header summarizing it, so listing saves reads 64
+// bytes from each (readHeader), followed by the demand history at a fixed offset so a file-backed save can
+// map it lazily instead of reading it (read with a FileChannel). Version 3 adds the history's running
+// statistics, so loading doesn't have to touch the history at all. Version 4 adds the earnings, stamina and
+// reputation histories after the demand history, each a count and a packed run of doubles; their offsets
+// follow from the counts, so they're mapped the same way. Versions 1 to 3 are still read.
+//
+// Layout (version 4):
+//   0  magic "SUPB", byte version, 3 bytes reserved
+//   8  long timestamp, double money, int shiftsWorked, int reputation, int demand count n,
+//   36 byte name length, 27 bytes player name (UTF-8, cut to fit, zero padded)
+//   64 n x double demand
+//   then for earnings, stamina and reputation: int m, m x double (not before version 4),
+//   then the demand statistics (ShiftSeries.Stats.write; not in version 2), then the earnings, stamina
+//   and reputation statistics (not before version 4),
+//   double baseDemandFactor, varlong journalSeq,
+//   byte hasPlayer [string name, varint health, varint stamina, double money, varint shiftsWorked,
+//                   varint reputation, varint n, n x (string item, varint count)],
+//   byte hasManager [string name, varint age],
+//   varint n, n x (string key, string name, string role, varint age)
+//
+// Version 1 had no header: magic, version, varlong timestamp, double baseDemandFactor, varlong journalSeq,
+// then player, manager and NPCs as above, then varint n, n x double demand.
+public class BinarySaveFormat {
+    public static final byte[] MAGIC = { 'S', 'U', 'P', 'B' };
+    public static final int VERSION = 4;
+    public static final int HEADER_SIZE = 64;
+    private static final int HEADER_NAME_BYTES = 27;
+
+    // True if the first bytes of a save are the binary magic (so JSON saves are told apart on load)
+    public static boolean matches(byte[] head, int length) {
+        if (length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    public static void write(GameData data, OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        Player p = data.playerData;
+        ShiftSeries history = data.demandHistory != null ? data.demandHistory : ShiftSeries.EMPTY;
+        int n = history.size();
+
+        // Header
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.write(new byte[3]);
+        out.writeLong(data.gameTimestamp);
+        out.writeDouble(p != null ? p.getMoney() : 0);
+        out.writeInt(p != null ? p.getShiftsWorked() : 0);
+        out.writeInt(p != null ? p.getReputation() : 0);
+        out.writeInt(n);
+        byte[] name = (p != null ? p.getName() : "").getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(name.length, HEADER_NAME_BYTES);
+        while (nameLength < name.length && (name[nameLength] & 0xC0) == 0x80) nameLength--; // don't split a character
+        out.writeByte(nameLength);
+        out.write(name, 0, nameLength);
+        out.write(new byte[HEADER_NAME_BYTES - nameLength]);
+
+        // Per-shift histories, then their statistics
+        ShiftSeries[] extra = { data.earningsHistory, data.staminaHistory, data.reputationHistory };
+        writeDoubles(out, history);
+        for (ShiftSeries series : extra) {
+            out.writeInt(series.size());
+            writeDoubles(out, series);
+        }
+        history.getStats().write(out);
+        for (ShiftSeries series : extra) series.getStats().write(out);
+
+        out.writeDouble(data.baseDemandFactor);
+        writeVarLong(out, data.journalSeq);
+        writeBody(out, data);
+        out.flush();
+    }
+
+    private static void writeDoubles(DataOutputStream out, ShiftSeries series) throws IOException {
+        for (int i = 0; i < series.size(); i++) {
+            out.writeDouble(series.get(i));
+        }
+    }
+
+    // Player, manager and NPCs, the same in every version
+    private static void writeBody(DataOutputStream out, GameData data) throws IOException {
+        // Player
+        Player p = data.playerData;
+        out.writeBoolean(p != null);
+        if (p != null) {
+            writeString(out, p.getName());
+            writeVarInt(out, p.getHealth());
+            writeVarInt(out, p.getStamina());
+            out.writeDouble(p.getMoney());
+            writeVarInt(out, p.getShiftsWorked());
+            writeVarInt(out, p.getReputation());
+            Map<String, Integer> inventory = p.getInventory();
+            writeVarInt(out, inventory.size());
+            for (Map.Entry<String, Integer> e : inventory.entrySet()) {
+                writeString(out, e.getKey());
+                writeVarInt(out, e.getValue());
+            }
+        }
+
+        // Manager
+        out.writeBoolean(data.managerName != null);
+        if (data.managerName != null) {
+            writeString(out, data.managerName);
+            writeVarInt(out, data.managerAge);
+        }
+
+        // NPCs
+        writeVarInt(out, data.npcsData.size());
+        for (Map.Entry<String, GameData.NPCData> e : data.npcsData.entrySet()) {
+            writeString(out, e.getKey());
+            writeString(out, e.getValue().name);
+            writeString(out, e.getValue().role);
+            writeVarInt(out, e.getValue().age);
+        }
+    }
+
+    public static GameData read(InputStream is) throws IOException {
+        return read(is, null);
+    }
+
+    // file, if given, is the file the stream was opened on; the histories are then mapped from it rather
+    // than read
+    public static GameData read(InputStream is, FileChannel file) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        int version = readVersion(in);
+        GameData data = new GameData();
+        data.schemaVersion = version;
+
+        if (version == 1) {
+            data.gameTimestamp = readVarLong(in);
+            data.baseDemandFactor = in.readDouble();
+            data.journalSeq = readVarLong(in);
+            readBody(in, data);
+            data.demandHistory = ShiftSeries.wrap(readDoubles(in, readVarInt(in)), null);
+            return data;
+        }
+
+        in.skipBytes(3);
+        data.gameTimestamp = in.readLong();
+        in.skipBytes(16); // money, shifts and reputation are read again with the player
+        int n = in.readInt();
+        in.skipBytes(1 + HEADER_NAME_BYTES);
+        if (n < 0) throw new IOException("Malformed demand history length");
+
+        long offset = HEADER_SIZE;
+        DoubleBuffer demand = readOrMapDoubles(in, file, offset, n);
+        offset += 8L * n;
+        DoubleBuffer[] extra = new DoubleBuffer[3];
+        if (version >= 4) {
+            for (int i = 0; i < extra.length; i++) {
+                int m = in.readInt();
+                extra[i] = readOrMapDoubles(in, file, offset + 4, m);
+                offset += 4 + 8L * m;
+            }
+        }
+
+        // Statistics are recomputed from the history if missing
+        ShiftSeries.Stats stats = version >= 3 ? ShiftSeries.Stats.read(in) : null;
+        data.demandHistory = ShiftSeries.wrap(demand, stats);
+        if (version >= 4) {
+            data.earningsHistory = ShiftSeries.wrap(extra[0], ShiftSeries.Stats.read(in));
+            data.staminaHistory = ShiftSeries.wrap(extra[1], ShiftSeries.Stats.read(in));
+            data.reputationHistory = ShiftSeries.wrap(extra[2], ShiftSeries.Stats.read(in));
+        }
+
+        data.baseDemandFactor = in.readDouble();
+        data.journalSeq = readVarLong(in);
+        readBody(in, data);
+        return data;
+    }
+
+    // Just the summary at the front of a save. Version 1 saves have none and are read in full.
+    public static SaveHeader readHeader(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        int version = readVersion(in);
+        if (version == 1) {
+            GameData data = new GameData();
+            data.gameTimestamp = readVarLong(in);
+            data.baseDemandFactor = in.readDouble();
+            data.journalSeq = readVarLong(in);
+            readBody(in, data);
+            Player p = data.playerData;
+            return p != null ? new SaveHeader(data.gameTimestamp, p.getName(), p.getMoney(), p.getShiftsWorked(), p.getReputation())
+                             : new SaveHeader(data.gameTimestamp, "", 0, 0, 0);
+        }
+
+        in.skipBytes(3);
+        long timestamp = in.readLong();
+        double money = in.readDouble();
+        int shiftsWorked = in.readInt();
+        int reputation = in.readInt();
+        in.readInt(); // demand count
+        int nameLength = Math.min(in.readUnsignedByte(), HEADER_NAME_BYTES);
+        byte[] name = new byte[HEADER_NAME_BYTES];
+        in.readFully(name);
+        return new SaveHeader(timestamp, new String(name, 0, nameLength, StandardCharsets.UTF_8), money, shiftsWorked, reputation);
+    }
+
+    private static int readVersion(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!matches(magic, magic.length)) throw new IOException("Not a binary save");
+        int version = in.readUnsignedByte();
+        if (version > VERSION) throw new IOException("Save format version " + version + " is newer than this game supports");
+        return version;
+    }
+
+    private static void readBody(DataInputStream in, GameData data) throws IOException {
+        // Player
+        if (in.readBoolean()) {
+            String name = readString(in);
+            int health = readVarInt(in);
+            int stamina = readVarInt(in);
+            double money = in.readDouble();
+            int shiftsWorked = readVarInt(in);
+            Player p = Player.fromJson(name, health, stamina, money, shiftsWorked);
+            p.setReputation(readVarInt(in));
+            int items = readVarInt(in);
+            for (int i = 0; i < items; i++) {
+                p.addItem(readString(in), readVarInt(in));
+            }
+            data.playerData = p;
+        }
+
+        // Manager
+        if (in.readBoolean()) {
+            data.managerName = readString(in);
+            data.managerAge = readVarInt(in);
+        }
+
+        // NPCs
+        int npcs = readVarInt(in);
+        for (int i = 0; i < npcs; i++) {
+            String key = readString(in);
+            GameData.NPCData npc = new GameData.NPCData();
+            npc.name = readString(in);
+            npc.role = readString(in);
+            npc.age = readVarInt(in);
+            data.npcsData.put(key, npc);
+        }
+    }
+
+    // n doubles at offset in the file, mapped if there is a file and read from the stream otherwise; either
+    // way the stream ends up past them
+    private static DoubleBuffer readOrMapDoubles(DataInputStream in, FileChannel file, long offset, int n) throws IOException {
+        if (file == null || n <= 0) return readDoubles(in, n);
+        long bytes = 8L * n;
+        if (offset + bytes > file.size()) throw new EOFException();
+        MappedByteBuffer mapped = file.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+        skipFully(in, bytes);
+        return mapped.asDoubleBuffer();
+    }
+
+    private static DoubleBuffer readDoubles(DataInputStream in, int n) throws IOException {
+        if (n < 0) throw new IOException("Malformed history length");
+        double[] values = new double[Math.min(n, 1 << 16)]; // a corrupt count shouldn't allocate gigabytes up front
+        for (int i = 0; i < n; i++) {
+            if (i == values.length) values = Arrays.copyOf(values, Math.min(n, values.length * 2));
+            values[i] = in.readDouble();
+        }
+        return DoubleBuffer.wrap(values, 0, n).slice();
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new EOFException();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    // Zigzag varints: small magnitudes of either sign take one or two bytes
+    static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        writeVarLong(out, v);
+    }
+
+    static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        long zz = (v << 1) ^ (v >> 63);
+        while ((zz & ~0x7FL) != 0) {
+            out.writeByte((int) ((zz & 0x7F) | 0x80));
+            zz >>>= 7;
+        }
+        out.writeByte((int) zz);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long zz = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            zz |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return (zz >>> 1) ^ -(zz & 1);
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int len = readVarInt(in);
+        if (len < 0) throw new IOException("Malformed string length");
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Windowed aggregates over the per-shift career history: demand factor, earnings, and stamina and reputation
+// after each shift. Every metric keeps a SeriesPyramid, so the min/max/mean of any range of shifts is
+// O(log n); tumbling and sliding windows and downsampling are built from those range queries.
+//
+// Shifts are numbered from 0 across the whole career. Saves from before the other series were recorded
+// only have demand, so a metric with a shorter series covers just the latest shifts, and windows before it
+// starts are empty.
+//
+//   CareerAnalytics analytics = new CareerAnalytics();
+//   analytics.update(snapshot);                          // cheap: only folds in new shifts
+//   analytics.tumbling(Metric.EARNINGS, 10);             // per review period
+//   analytics.best(Metric.EARNINGS, 7, true);            // best week
+public class CareerAnalytics {
+    public enum Metric { DEMAND, EARNINGS, STAMINA, REPUTATION }
+
+    // Aggregate of one metric over shifts [from, to); count may be less than to - from if the metric
+    // wasn't recorded for all of them
+    public static class Window {
+        public final int from;
+        public final int to;
+        public final int count;
+        public final double min;
+        public final double max;
+        public final double sum;
+
+        Window(int from, int to, int count, double min, double max, double sum) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+        }
+
+        public double getMean() { return count == 0 ? Double.NaN : sum / count; }
+        public boolean isEmpty() { return count == 0; }
+
+        @Override
+        public String toString() {
+            String shifts = "shifts " + (from + 1) + "-" + to;
+            if (count == 0) return shifts + ": no data";
+            return shifts + String.format(": mean %.2f, range %.2f-%.2f, total %.2f", getMean(), min, max, sum);
+        }
+    }
+
+    private final Map<Metric, ShiftSeries> series = new EnumMap<>(Metric.class);
+    private final Map<Metric, SeriesPyramid> pyramids = new EnumMap<>(Metric.class);
+    private final Map<Metric, Map<Integer, BestScan>> scans = new EnumMap<>(Metric.class); // keyed by +size/-size for highest/lowest
+
+    public CareerAnalytics() {
+        for (Metric m : Metric.values()) {
+            series.put(m, ShiftSeries.EMPTY);
+            pyramids.put(m, new SeriesPyramid());
+            scans.put(m, new HashMap<>());
+        }
+    }
+
+    public synchronized void update(Metric metric, ShiftSeries values) {
+        series.put(metric, values != null ? values : ShiftSeries.EMPTY);
+    }
+
+    public synchronized void update(GameSnapshot snapshot) {
+        update(Metric.DEMAND, snapshot.demandHistory);
+        update(Metric.EARNINGS, snapshot.earningsHistory);
+        update(Metric.STAMINA, snapshot.staminaHistory);
+        update(Metric.REPUTATION, snapshot.reputationHistory);
+    }
+
+    public synchronized void update(GameData data) {
+        update(Metric.DEMAND, data.demandHistory);
+        update(Metric.EARNINGS, data.earningsHistory);
+        update(Metric.STAMINA, data.staminaHistory);
+        update(Metric.REPUTATION, data.reputationHistory);
+    }
+
+    // Shifts in the career, i.e. the longest series
+    public synchronized int shifts() {
+        int n = 0;
+        for (ShiftSeries s : series.values()) n = Math.max(n, s.size());
+        return n;
+    }
+
+    public synchronized ShiftSeries getSeries(Metric metric) {
+        return series.get(metric);
+    }
+
+    // Aggregate of shifts [from, to), clipped to the career
+    public synchronized Window range(Metric metric, int from, int to) {
+        int shifts = shifts();
+        from = Math.max(0, from);
+        to = Math.min(shifts, to);
+        ShiftSeries values = series.get(metric);
+        int start = shifts - values.size(); // first shift this metric was recorded for
+        int lo = Math.max(from, start) - start;
+        int hi = to - start;
+        if (hi <= lo) return new Window(from, Math.max(from, to), 0, Double.NaN, Double.NaN, 0);
+
+        SeriesPyramid pyramid = pyramids.get(metric);
+        pyramid.update(values);
+        double[] agg = pyramid.query(lo, hi);
+        return new Window(from, to, hi - lo, agg[0], agg[1], agg[2]);
+    }
+
+    // The last size shifts
+    public synchronized Window recent(Metric metric, int size) {
+        int shifts = shifts();
+        return range(metric, shifts - size, shifts);
+    }
+
+    // Consecutive windows of size shifts from the first shift; the last one may be partial
+    public List<Window> tumbling(Metric metric, int size) {
+        return sliding(metric, size, size, true);
+    }
+
+    // Windows of size shifts starting every step shifts; only complete windows
+    public List<Window> sliding(Metric metric, int size, int step) {
+        return sliding(metric, size, step, false);
+    }
+
+    private synchronized List<Window> sliding(Metric metric, int size, int step, boolean partial) {
+        if (size <= 0 || step <= 0) throw new IllegalArgumentException("window size and step must be positive");
+        int shifts = shifts();
+        List<Window> windows = new ArrayList<>();
+        for (int from = 0; from < shifts; from += step) {
+            if (from + size > shifts && !partial) break;
+            windows.add(range(metric, from, from + size));
+        }
+        return windows;
+    }
+
+    // About points evenly sized tumbling windows covering the whole career, e.g. for a chart
+    public List<Window> downsample(Metric metric, int points) {
+        if (points <= 0) throw new IllegalArgumentException("points must be positive");
+        int size = Math.max(1, (shifts() + points - 1) / points);
+        return tumbling(metric, size);
+    }
+
+    // The size-shift window with the highest (or lowest) mean, e.g. the best week's earnings. Null if the
+    // metric has fewer than size shifts. Found with a rolling sum, then the winner is aggregated exactly.
+    // Each (metric, size, highest) query keeps its scan, so asking again after new shifts only costs
+    // O(new shifts); the first ask, or one after the series was replaced rather than extended, is O(n).
+    public synchronized Window best(Metric metric, int size, boolean highest) {
+        if (size <= 0) throw new IllegalArgumentException("window size must be positive");
+        ShiftSeries values = series.get(metric);
+        if (values.size() < size) return null;
+
+        BestScan scan = scans.get(metric).computeIfAbsent(highest ? size : -size, k -> new BestScan(size, highest));
+        int bestStart = scan.update(values);
+        int start = shifts() - values.size();
+        return range(metric, start + bestStart, start + bestStart + size);
+    }
+
+    // A rolling-sum scan for best() that picks up where it left off. It does the same sums in the same
+    // order as a scan from scratch, so the answer is identical either way.
+    private static final class BestScan {
+        private final int size;
+        private final boolean highest;
+        private ShiftSeries scanned = ShiftSeries.EMPTY; // values.size() >= size once set
+        private double sum;
+        private double bestSum;
+        private int bestStart;
+
+        BestScan(int size, boolean highest) {
+            this.size = size;
+            this.highest = highest;
+        }
+
+        // Start of the best window in values, which has at least size values
+        int update(ShiftSeries values) {
+            int from = scanned.size();
+            if (scanned.size() == 0 || !values.startsWith(scanned)) {
+                sum = 0;
+                for (int i = 0; i < size; i++) sum += values.get(i);
+                bestSum = sum;
+                bestStart = 0;
+                from = size;
+            }
+            for (int i = from; i < values.size(); i++) {
+                sum += values.get(i) - values.get(i - size);
+                if (highest ? sum > bestSum : sum < bestSum) {
+                    bestSum = sum;
+                    bestStart = i - size + 1;
+                }
+            }
+            scanned = values;
+            return bestStart;
+        }
+    }
+}
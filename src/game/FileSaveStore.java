@@ -0,0 +1,301 @@
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// One file per save in a directory (the original layout: saves/game_<epoch seconds>.save). The directory
+// is scanned once on startup into an in-memory manifest, so finding the newest save or listing them never
+// lists the directory again. After each write a background compactor applies the retention policy: the
+// newest saves stay as they are, daily/weekly checkpoints are gzipped into saves/archive/, and everything
+// else is deleted.
+public class FileSaveStore implements SaveStore {
+    private static final String PREFIX = "game_";
+    private static final String SUFFIX = ".save";
+    private static final String ARCHIVE_SUFFIX = ".save.gz";
+
+    // A save in the manifest, keyed by its time in epoch seconds
+    private static class SaveFile {
+        final File file;
+        final boolean archived;
+
+        SaveFile(File file, boolean archived) {
+            this.file = file;
+            this.archived = archived;
+        }
+    }
+
+    private final File saveDir;
+    private final File archiveDir;
+    private final RetentionPolicy retention;
+    private final TreeMap<Long, SaveFile> manifest = new TreeMap<>();
+    private final ExecutorService compactor;
+    private final boolean ownsCompactor;
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    private volatile Future<?> lastCompaction; // for close() to wait on when the compactor is shared
+
+    public FileSaveStore(File saveDir) {
+        this(saveDir, RetentionPolicy.DEFAULT);
+    }
+
+    public FileSaveStore(File saveDir, RetentionPolicy retention) {
+        this(saveDir, retention, newCompactor(), true);
+    }
+
+    // Compacting on a thread shared with other stores (a server's slots, say), which the caller shuts down
+    public FileSaveStore(File saveDir, RetentionPolicy retention, ExecutorService sharedCompactor) {
+        this(saveDir, retention, sharedCompactor, false);
+    }
+
+    private FileSaveStore(File saveDir, RetentionPolicy retention, ExecutorService compactor, boolean ownsCompactor) {
+        this.saveDir = saveDir;
+        this.archiveDir = new File(saveDir, "archive");
+        this.retention = retention;
+        if (!saveDir.exists()) {
+            saveDir.mkdirs();
+        }
+        scan();
+
+        this.compactor = compactor;
+        this.ownsCompactor = ownsCompactor;
+    }
+
+    // The thread a store's retention passes run on
+    static ExecutorService newCompactor() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "SaveCompactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Build the manifest from the save and archive directories, clearing out temp files a crash left behind
+    private void scan() {
+        File[] files = saveDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.endsWith(SUFFIX + ".tmp")) f.delete();
+                else if (name.endsWith(SUFFIX)) manifest.put(timeOf(f, SUFFIX), new SaveFile(f, false));
+            }
+        }
+        File[] archived = archiveDir.listFiles();
+        if (archived != null) {
+            for (File f : archived) {
+                String name = f.getName();
+                if (name.endsWith(ARCHIVE_SUFFIX + ".tmp")) f.delete();
+                else if (name.endsWith(ARCHIVE_SUFFIX)) manifest.putIfAbsent(timeOf(f, ARCHIVE_SUFFIX), new SaveFile(f, true));
+            }
+        }
+    }
+
+    // Save time from the file name, or the modification time for files named some other way
+    static long timeOf(File f, String suffix) {
+        String name = f.getName();
+        if (name.startsWith(PREFIX)) {
+            try {
+                return Long.parseLong(name.substring(PREFIX.length(), name.length() - suffix.length()));
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        return f.lastModified() / 1000;
+    }
+
+    @Override
+    public String write(long timestamp, Writer writer) throws IOException {
+        long time = timestamp / 1000;
+        File out = new File(saveDir, PREFIX + time + SUFFIX);
+        writeAtomically(out, false, writer);
+
+        synchronized (this) {
+            SaveFile replaced = manifest.put(time, new SaveFile(out, false));
+            if (replaced != null && replaced.archived) replaced.file.delete();
+        }
+        scheduleCompaction();
+        return out.getPath();
+    }
+
+    @Override
+    public synchronized <T> T readLatest(Reader<T> reader) throws IOException {
+        Map.Entry<Long, SaveFile> newest = manifest.lastEntry();
+        if (newest == null) return null;
+        return read(newest.getValue(), reader);
+    }
+
+    // Restore the save taken at the given time (epoch seconds), archived or not; null if there isn't one
+    public synchronized <T> T read(long time, Reader<T> reader) throws IOException {
+        SaveFile save = manifest.get(time);
+        if (save == null) return null;
+        return read(save, reader);
+    }
+
+    private static <T> T read(SaveFile save, Reader<T> reader) throws IOException {
+        FileInputStream fis = new FileInputStream(save.file);
+        InputStream in = new BufferedInputStream(fis);
+        if (save.archived) in = new GZIPInputStream(in, 8192);
+        try (InputStream is = in) {
+            return save.archived ? reader.readFrom(is) : reader.readFrom(is, fis.getChannel());
+        }
+    }
+
+    // Reads outside the lock, so a slow listing doesn't hold up saving; a save compacted away in the
+    // meantime is skipped
+    @Override
+    public <T> List<T> list(Reader<T> reader) {
+        List<SaveFile> saves;
+        synchronized (this) {
+            saves = new ArrayList<>(manifest.values());
+        }
+        List<T> results = new ArrayList<>(saves.size());
+        for (SaveFile save : saves) {
+            try {
+                results.add(read(save, reader));
+            } catch (IOException e) {
+                // gone or unreadable
+            }
+        }
+        return results;
+    }
+
+    // Times (epoch seconds) of every save still kept, oldest first
+    public synchronized List<Long> getSaveTimes() {
+        return new ArrayList<>(manifest.keySet());
+    }
+
+    @Override
+    public synchronized boolean hasSaves() {
+        return !manifest.isEmpty();
+    }
+
+    // Coalesces: one queued pass covers every write made before it starts
+    private void scheduleCompaction() {
+        if (!compactionQueued.compareAndSet(false, true)) return;
+        try {
+            lastCompaction = compactor.submit(() -> {
+                compactionQueued.set(false);
+                compact();
+            });
+        } catch (RejectedExecutionException e) {
+            compactionQueued.set(false); // closed
+        }
+    }
+
+    // Apply the retention policy. Each file is handled under the lock on its own, so reads only ever wait
+    // for one file to be archived or deleted.
+    void compact() {
+        Set<Long> recent, checkpoints;
+        List<Long> times;
+        synchronized (this) {
+            recent = retention.recent(manifest.navigableKeySet());
+            checkpoints = retention.checkpoints(manifest.navigableKeySet());
+            times = new ArrayList<>(manifest.keySet());
+        }
+
+        for (long time : times) {
+            if (recent.contains(time)) continue;
+            try {
+                if (checkpoints.contains(time)) archive(time);
+                else delete(time);
+            } catch (IOException e) {
+                System.err.println("Failed to compact save " + time + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Written to a temp file next to out (gzipped if asked), synced, then renamed over out, so a crash
+    // mid-write leaves either the old file or the new one and never a truncated file that readLatest() would
+    // pick up. SaveMigrator rewrites saves in place the same way. Leftover .tmp files are cleared on startup.
+    static void writeAtomically(File out, boolean gzip, Writer writer) throws IOException {
+        File tmp = new File(out.getAbsoluteFile().getParentFile(), out.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            OutputStream os = gzip ? new GZIPOutputStream(new BufferedOutputStream(fos), 8192) : new BufferedOutputStream(fos);
+            writer.writeTo(os);
+            if (gzip) ((GZIPOutputStream) os).finish();
+            os.flush();
+            fos.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        try {
+            Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private synchronized void archive(long time) throws IOException {
+        SaveFile save = manifest.get(time);
+        if (save == null || save.archived) return;
+
+        if (!archiveDir.exists()) archiveDir.mkdirs();
+        File out = new File(archiveDir, PREFIX + time + ARCHIVE_SUFFIX);
+        writeAtomically(out, true, gz -> {
+            try (InputStream in = new FileInputStream(save.file)) {
+                in.transferTo(gz);
+            }
+        });
+
+        manifest.put(time, new SaveFile(out, true));
+        save.file.delete();
+    }
+
+    private synchronized void delete(long time) {
+        SaveFile save = manifest.remove(time);
+        if (save != null) save.file.delete();
+    }
+
+    // Lets a pass already under way (or queued, on a shared compactor) finish so no save is left
+    // half-archived
+    @Override
+    public void close() {
+        if (!ownsCompactor) {
+            Future<?> pass = lastCompaction;
+            if (pass == null) return;
+            try {
+                pass.get(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // compact() reports its own failures; a pass still running finishes on its own
+            }
+            return;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return saveDir.getPath();
+    }
+}
@@ -1,8 +1,17 @@
 package game;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 import characters.*;
 import namegenerator.*;
@@ -10,89 +19,141 @@ import weather.*;
 import items.*;
 
 public class Game {
+    private final GameServices services; // weather, names, rules and saving; maybe shared with other games
+    private final boolean ownsServices;
+    private final String saveSlot; // a server session's save slot, or null for a game on its own
+    private final PrintWriter out; // the game's console
     private Save save;
     private Weather weatherAPI;
-    private NameGenerator nameGenerator;
     private Player player;
     private Manager manager;
     private HashMap<String, NPC> npcs;
     private double baseDemandFactor = 1.0;
-    private ArrayList<Double> demandHistory = new ArrayList<>();
-
-    private void initWeatherAPI() {
+    private GameRules rules = GameRules.DEFAULT;
+    private ShiftSeries demandHistory = ShiftSeries.EMPTY; // immutable, shared with snapshots
+    private ShiftSeries earningsHistory = ShiftSeries.EMPTY;
+    private ShiftSeries staminaHistory = ShiftSeries.EMPTY;
+    private ShiftSeries reputationHistory = ShiftSeries.EMPTY;
+    private final CareerAnalytics analytics = new CareerAnalytics(); // for the history command
+
+    // Latest immutable snapshot of the state above, read by the autosaver (see publishState)
+    private final AtomicReference<GameSnapshot> published = new AtomicReference<>();
+    private Map<String, GameData.NPCData> npcData;
+    private long stateVersion = 0;
+
+    // Event-sourced saving (--journal): events are appended here and compacted into a full save
+    // every snapshotInterval events
+    private Journal journal;
+    private int snapshotInterval;
+
+    // Everything the session gets from outside goes through here, so it can be recorded and replayed
+    private final SessionLog session;
+
+    // Randomize weather using random coordinates; takes a prefetched forecast when one is ready
+    private void randomizeWeather() {
+        OpenMeteoResponse prefetched = null;
         try {
-            weatherAPI = new Weather(40.7128, -74.0060); // Start with NY city coords
-            OpenMeteoResponse resp = weatherAPI.getLatestResponse();
-            
-            // debug info
-            // System.out.println("Current weather: " + resp);
+            prefetched = session.weather(services::pollPrefetched);
         } catch (Exception e) {
-            System.out.println("Failed to initialize weather API: " + e.getMessage());
+            out.println("Failed to randomize weather: " + e.getMessage());
         }
-    }
-
-    private void initNameGeneratorAPI() {
-        try {
-            nameGenerator = new NameGenerator();
-            nameGenerator.getNewResponse();
-        } catch (Exception e) {
-            System.out.println("Failed to initialize name generator API: " + e.getMessage());
+        if (prefetched != null) {
+            weatherAPI.addResponse(prefetched);
+            return;
         }
 
-        // for debugging, print all generated names
-        // for (NameAPIResponse.NameData nd : nameGenerator.getLatestResponse().getGeneratedNames()) { System.out.println(nd); }
-    }
-
-    // Randomize weather using random coordinates
-    private void randomizeWeather() {
-        double lat = -45 + Math.random() * 90;
-        double lon = -90 + Math.random() * 180;
+        // Queue ran dry, fetch live
+        double lat = -45 + session.random() * 90;
+        double lon = -90 + session.random() * 180;
         weatherAPI.setCoordinates(lat, lon);
 
         try {
-            OpenMeteoResponse resp = weatherAPI.getNewResponse();
+            OpenMeteoResponse resp = session.weather(() -> weatherAPI.fetch(lat, lon));
+            weatherAPI.addResponse(resp);
             // debug info
             // System.out.println("New location: (" + String.format("%.4f", lat) + ", " + String.format("%.4f", lon) + ")");
             // System.out.println("Current weather: " + resp);
         } catch (Exception e) {
-            System.out.println("Failed to randomize weather: " + e.getMessage());
+            out.println("Failed to randomize weather: " + e.getMessage());
         }
     }
 
+    // Demand for the current weather (see GameRules.demandFactor)
     private double calcDemandFactor() {
-        // Multiplies base demand by weather modifiers; temperature affects customer traffic, pressure indicates weather quality
-        double demandFactor = baseDemandFactor;
         OpenMeteoResponse resp = weatherAPI.getLatestResponse();
-        if (resp != null && resp.getHourly() != null && resp.getHourly().length > 0) {
-            double temp = resp.getHourly()[0].temperature;
-            double pressure = resp.getHourly()[0].pressure;
+        if (resp == null || resp.size() == 0) return baseDemandFactor;
+        return rules.demandFactor(baseDemandFactor, resp.getTemperature(0), resp.getPressure(0));
+    }
 
-            // hot increases demand slightly
-            if (temp > 80) demandFactor *= 1.3;
-            else if (temp < 40) demandFactor *= 1.15;
+    // Server sessions don't journal: a journal keeps a sync thread of its own
+    private void initJournal(GameOptions options) {
+        if (!options.getFlag("journal") || session.isReplaying() || saveSlot != null) return;
+        try {
+            journal = new Journal(new File(options.get("journal-file", "saves/journal.log")));
+            snapshotInterval = options.getInt("journal-snapshot", 100);
+        } catch (IOException e) {
+            out.println("Failed to open journal: " + e.getMessage() + ". Using regular saves.");
+            journal = null;
+        }
+    }
 
-            // low pressure = bad weather = less customers
-            if (pressure < 1004) demandFactor *= 0.9;
+    // Note a change to the game state: a new snapshot is published for the autosaver, which coalesces
+    // these into debounced saves, and in event-sourced mode the event is appended to the journal, taking a
+    // snapshot when enough have piled up
+    private void recordEvent(byte type, String item, double demandFactor) {
+        save.markDirty(publishState().version);
+        if (journal == null) return;
+        try {
+            journal.append(type, item, demandFactor, player);
+        } catch (IOException e) {
+            out.println("Failed to write journal: " + e.getMessage());
+            return;
+        }
+        if (journal.getEventsSinceSnapshot() >= snapshotInterval) snapshotJournal();
+    }
 
-            // high pressure = good weather = more customers
-            if (pressure > 1010 && pressure < 1013) demandFactor *= 1.1;
+    // Publish an immutable snapshot of the current state. Only called from the game thread, between
+    // changes, so each snapshot is a consistent point in time; the autosaver reads the latest one without
+    // any locking.
+    private GameSnapshot publishState() {
+        if (npcData == null) npcData = GameSnapshot.npcData(npcs);
+        GameSnapshot snapshot = new GameSnapshot(++stateVersion, player, manager, npcData, baseDemandFactor, demandHistory,
+            earningsHistory, staminaHistory, reputationHistory);
+        published.set(snapshot);
+        return snapshot;
+    }
 
-            // super good weather = lots of customers
-            if (pressure >= 1013) demandFactor *= 1.3;
-        }
+    private GameData snapshotState() {
+        return published.get().toGameData();
+    }
 
-        return demandFactor;
+    // Queue a full save covering the journal so far; the journal is emptied once it has been written
+    private CompletableFuture<Boolean> snapshotJournal() {
+        GameData gameData = snapshotState();
+        gameData.journalSeq = journal.getLastSeq();
+        return save.saveGame(gameData).thenApply(saved -> {
+            if (!saved) return false;
+            try {
+                journal.compact(gameData.journalSeq);
+            } catch (IOException e) {
+                out.println("Failed to compact journal: " + e.getMessage());
+            }
+            return true;
+        });
     }
 
     // Load previous game state or create fresh player/manager/NPCs with defaults
     private void initializeGameState() {
-        GameData gameData = save.loadLatestGame();
+        GameData gameData = session.state(this::loadGameData);
         
         if (gameData != null) {
             // Load from save file
-            this.player = gameData.playerData;
+            this.player = gameData.playerData != null ? gameData.playerData : new Player("Charlie Dotter");
             this.baseDemandFactor = gameData.baseDemandFactor;
-            this.demandHistory = new ArrayList<>(gameData.demandHistory);
+            this.demandHistory = gameData.demandHistory; // may be mapped lazily from the save
+            this.earningsHistory = gameData.earningsHistory;
+            this.staminaHistory = gameData.staminaHistory;
+            this.reputationHistory = gameData.reputationHistory;
             
             // Restore manager
             if (gameData.managerName != null) {
@@ -109,70 +170,197 @@ public class Game {
                 npcs.put(entry.getKey(), npc);
             }
             
-            System.out.println("Game state loaded from save.");
+            out.println("Game state loaded from save.");
         } else {
             // Initialize with defaults
             this.player = new Player("Charlie Dotter");
             this.manager = initManagerNPC();
             this.npcs = new HashMap<>();
             this.baseDemandFactor = 1.0;
-            this.demandHistory = new ArrayList<>();
+            this.demandHistory = ShiftSeries.EMPTY;
+            this.earningsHistory = ShiftSeries.EMPTY;
+            this.staminaHistory = ShiftSeries.EMPTY;
+            this.reputationHistory = ShiftSeries.EMPTY;
             
-            System.out.println("No save found. Starting fresh game.");
+            out.println("No save found. Starting fresh game.");
         }
     }
 
-    // Generate manager NPC from name API; falls back to 'Boss' if API unavailable
-    private Manager initManagerNPC() {
-        try {
-            if (nameGenerator == null || nameGenerator.getLatestResponse() == null) {
-                nameGenerator.getNewResponse();
+    // Latest save, or null if there is none
+    private GameData loadGameData() {
+        GameData gameData = save.loadLatestGame();
+
+        // Event-sourced mode: bring the snapshot up to date with everything journaled after it
+        if (journal != null) {
+            try {
+                gameData = journal.replay(gameData);
+            } catch (IOException e) {
+                out.println("Failed to replay journal: " + e.getMessage());
             }
-            
-            NameAPIResponse.NameData[] generatedName = nameGenerator.getLatestResponse().getGeneratedNames();
-            NameAPIResponse.NameData mgrBio = generatedName[generatedName.length - 1];
-            return new Manager(mgrBio.getFullName(), mgrBio.age);
-        } catch (Exception e) {
-            System.out.println("Failed to generate manager: " + e.getMessage());
+        }
+        return gameData;
+    }
+
+    // Generate manager NPC from the name reservoir; falls back to 'Boss' if API unavailable
+    private Manager initManagerNPC() {
+        NameAPIResponse.NameData mgrBio = session.name(services::takeName);
+        if (mgrBio == null) {
+            out.println("Failed to generate manager: no names available");
             return new Manager("Boss", 40); // Fallback manager
         }
+        return new Manager(mgrBio.getFullName(), mgrBio.age);
     }
 
-    // Initializes APIs, loads/creates game state, starts autosave (5-min interval), and runs main game loop
+    // Career summary for the history command: each series at a glance, the recent review periods, and the
+    // best and worst weeks. analytics must be up to date.
+    private void printHistory() {
+        int shifts = analytics.shifts();
+        if (shifts == 0) {
+            out.println("No shifts worked yet.");
+            return;
+        }
+
+        out.println("--- Career history (" + shifts + " shifts) ---");
+        for (CareerAnalytics.Metric metric : CareerAnalytics.Metric.values()) {
+            CareerAnalytics.Window all = analytics.range(metric, 0, shifts);
+            String name = metric.name().charAt(0) + metric.name().substring(1).toLowerCase();
+            if (all.isEmpty()) {
+                out.println(String.format("%-11s not recorded yet", name));
+                continue;
+            }
+            out.println(String.format("%-11s mean %7.2f  min %7.2f  max %7.2f  %s", name,
+                all.getMean(), all.min, all.max, sparkline(analytics.downsample(metric, 40))));
+        }
+
+        // Review periods, newest last
+        out.println("\nRecent review periods:");
+        List<CareerAnalytics.Window> periods = analytics.tumbling(CareerAnalytics.Metric.DEMAND, 10);
+        for (CareerAnalytics.Window period : periods.subList(Math.max(0, periods.size() - 5), periods.size())) {
+            CareerAnalytics.Window earned = analytics.range(CareerAnalytics.Metric.EARNINGS, period.from, period.to);
+            CareerAnalytics.Window stamina = analytics.range(CareerAnalytics.Metric.STAMINA, period.from, period.to);
+            CareerAnalytics.Window rep = analytics.range(CareerAnalytics.Metric.REPUTATION, period.from, period.to);
+            out.println("  Shifts " + (period.from + 1) + "-" + period.to + ": demand " + String.format("%.2f", period.getMean())
+                + (earned.isEmpty() ? "" : ", earned $" + String.format("%.2f", earned.sum))
+                + (stamina.isEmpty() ? "" : ", stamina " + String.format("%.0f", stamina.getMean()))
+                + (rep.isEmpty() ? "" : ", reputation " + String.format("%.0f", rep.getMean())));
+        }
+
+        CareerAnalytics.Window best = analytics.best(CareerAnalytics.Metric.EARNINGS, 7, true);
+        CareerAnalytics.Window worst = analytics.best(CareerAnalytics.Metric.EARNINGS, 7, false);
+        if (best != null) {
+            out.println("\nBest week:  shifts " + (best.from + 1) + "-" + best.to + ", earned $" + String.format("%.2f", best.sum));
+            out.println("Worst week: shifts " + (worst.from + 1) + "-" + worst.to + ", earned $" + String.format("%.2f", worst.sum));
+        }
+    }
+
+    // Window means as a row of block characters scaled between the lowest and highest
+    private static String sparkline(List<CareerAnalytics.Window> windows) {
+        final String bars = "▁▂▃▄▅▆▇█";
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        for (CareerAnalytics.Window w : windows) {
+            if (w.isEmpty()) continue;
+            lo = Math.min(lo, w.getMean());
+            hi = Math.max(hi, w.getMean());
+        }
+        StringBuilder line = new StringBuilder();
+        for (CareerAnalytics.Window w : windows) {
+            if (w.isEmpty()) {
+                line.append(' ');
+                continue;
+            }
+            int level = hi > lo ? (int) Math.round((w.getMean() - lo) / (hi - lo) * (bars.length() - 1)) : bars.length() / 2;
+            line.append(bars.charAt(level));
+        }
+        return line.toString();
+    }
+
+    // Initializes APIs, loads/creates game state, starts autosave (5-min interval), and runs main game loop.
+    // With --record=<file> the session is recorded for SessionReplay.
     public Game(String[] args) {
+        this(args, null);
+    }
 
-        // Initialize
-        Scanner in = new Scanner(System.in);
+    // Plays a session on the console through the given log (null plays live, recording if --record is
+    // given). To replay a recorded session, pass the log's own arguments.
+    public Game(String[] args, SessionLog sessionLog) {
+        GameOptions options = new GameOptions(args);
+        this.session = sessionLog != null ? sessionLog : openSessionLog(options, args);
+        this.services = new GameServices(options, session);
+        this.ownsServices = true;
+        this.saveSlot = null;
+        this.out = new PrintWriter(System.out, true);
+        play(new InputStreamReader(System.in));
+    }
 
-        initWeatherAPI();
-        initNameGeneratorAPI();
+    // Plays a server session: its own console and save slot, with everything else shared with the
+    // server's other sessions
+    public Game(GameServices services, String saveSlot, Reader input, PrintWriter output) {
+        this.session = SessionLog.LIVE;
+        this.services = services;
+        this.ownsServices = false;
+        this.saveSlot = saveSlot;
+        this.out = output;
+        play(input);
+    }
+
+    private void play(Reader input) {
+
+        // Initialize
+        Scanner in = new Scanner(input);
+        rules = services.rules;
+        weatherAPI = services.newWeather();
+        session.recordWeather(weatherAPI.getLatestResponse());
 
-        save = new Save();
+        save = services.openSave(saveSlot, out);
+        initJournal(services.options);
         
         // Load game state from save or initialize defaults
         initializeGameState();
         
-        // Start autosave thread
-        GameData initialGameData = new GameData(player, manager, npcs, baseDemandFactor, demandHistory);
-        save.startAutosave(initialGameData);
+        publishState();
+
+        // Start autosaving (the journal already persists every change in event-sourced mode)
+        if (journal == null && !session.isReplaying()) {
+            save.startAutosave(this::snapshotState);
+        }
 
-        Shop shop = new Shop();
+        Shop shop = services.shop;
 
 
         /* ---------------------------------------- */
-        System.out.println("Welcome to the supermarket — you are Charlie Dotter, a bagger.");
+        out.println("Welcome to the supermarket — you are Charlie Dotter, a bagger.");
 
         // main loop
         boolean running = true;
         while (running) {
-            System.out.println("\nChoose an action: work / shop / use / interact / stats / quit");
-            System.out.print("> ");
-            String cmd = in.nextLine().trim().toLowerCase();
-            System.out.println();
+            save.printNotices(); // saves finished since the last command
+            out.println("\nChoose an action: work / shop / use / interact / stats / history / saves / quit");
+            out.print("> ");
+            String cmd = readLine(in).trim().toLowerCase();
+            out.println();
 
             switch (cmd) {
                 case "stats": {
-                    System.out.println(player);
+                    out.println(player);
+                    out.println("Demand: " + demandHistory);
+                    break;
+                }
+
+
+
+                case "history": {
+                    analytics.update(published.get());
+                    printHistory();
+                    break;
+                }
+
+
+
+                case "saves": {
+                    // Listed from each save's header, oldest first
+                    List<SaveHeader> saves = save.listSaves();
+                    if (saves.isEmpty()) out.println("No saves yet.");
+                    for (SaveHeader header : saves) out.println(header);
                     break;
                 }
 
@@ -182,65 +370,77 @@ public class Game {
                 case "work": {
                     double demandFactor = calcDemandFactor();
 
-                    System.out.println("Day " + (player.getShiftsWorked() + 1) + "...");
-                    System.out.println("Working a shift under manager " + manager.getName() + "...");
-                    System.out.println("Current temperature and pressure affect demand. Temperature: " + 
-                        String.format("%.1f", weatherAPI.getLatestResponse().getHourly()[0].temperature) + "°F, " +
-                        "Pressure: " + String.format("%.1f", weatherAPI.getLatestResponse().getHourly()[0].pressure) + " hPa"
+                    out.println("Day " + (player.getShiftsWorked() + 1) + "...");
+                    out.println("Working a shift under manager " + manager.getName() + "...");
+                    out.println("Current temperature and pressure affect demand. Temperature: " + 
+                        String.format("%.1f", weatherAPI.getLatestResponse().getTemperature(0)) + "°F, " +
+                        "Pressure: " + String.format("%.1f", weatherAPI.getLatestResponse().getPressure(0)) + " hPa"
                     );
 
                     // If tired, warn player
-                    if (player.getStamina() <= 35) System.out.println("Warning: You are very tired (stamina: " + player.getStamina() + "). Consider using an Energy Drink before working.");
-                    else if (player.getStamina() <= 65) System.out.println("You feel somewhat tired (stamina: " + player.getStamina() + "). Working may be less effective.");
-                    else if (player.getStamina() < 80) System.out.println("You feel a bit groggy (stamina: " + player.getStamina() + ").");
-                    else if (player.getStamina() > 90) System.out.println("You feel energetic and ready to work! (stamina: " + player.getStamina() + ")");
+                    if (player.getStamina() <= 35) out.println("Warning: You are very tired (stamina: " + player.getStamina() + "). Consider using an Energy Drink before working.");
+                    else if (player.getStamina() <= 65) out.println("You feel somewhat tired (stamina: " + player.getStamina() + "). Working may be less effective.");
+                    else if (player.getStamina() < 80) out.println("You feel a bit groggy (stamina: " + player.getStamina() + ").");
+                    else if (player.getStamina() > 90) out.println("You feel energetic and ready to work! (stamina: " + player.getStamina() + ")");
 
                     // base case
-                    else System.out.println("Time to work. (stamina: " + player.getStamina() + ")");
+                    else out.println("Time to work. (stamina: " + player.getStamina() + ")");
 
-                    System.out.println("Current demand factor: " + String.format("%.2f", demandFactor));
-                    System.out.println("Current reputation: " + player.getReputation());
+                    out.println("Current demand factor: " + String.format("%.2f", demandFactor));
+                    out.println("Current reputation: " + player.getReputation());
                     
                     
                     double earned = player.workShift(manager, demandFactor);
-                    System.out.println("You worked a shift and earned $" + String.format("%.2f", earned));
+                    out.println("You worked a shift and earned $" + String.format("%.2f", earned));
 
-                    demandHistory.add(demandFactor);    // log demand factor for the day for performance tracking
+                    demandHistory = demandHistory.append(demandFactor); // log demand factor for the day for performance tracking
+                    earningsHistory = earningsHistory.append(earned);
+                    staminaHistory = staminaHistory.append(player.getStamina());
+                    reputationHistory = reputationHistory.append(player.getReputation());
+                    recordEvent(Journal.SHIFT, null, demandFactor);
                     
-                    int daysWorked = player.getShiftsWorked();
-                    if (daysWorked % 10 == 0) {
-                        // perfomance review every 30 days
-                        int rep = player.getReputation();
-                        System.out.println("\n--- Performance Review ---");
-                        if (rep >= 80) {
-                            System.out.println("Excellent work! Your reputation with " + manager.getName() + " has earned you a $50 bonus!");
-                            player.changeMoney(50.0);
-                        } else if (rep >= 60) {
-                            System.out.println("Good job! Your reputation with " + manager.getName() + " remains solid.");
-                        } else if (rep >= 20) {
-                            System.out.println("You need to improve your performance. Your reputation with " + manager.getName() + " is slipping. " + manager.getName() + 
-                                " suggests using Energy Drinks to maintain stamina during shifts.");
-                        } else {
-                            System.out.println("Your performance is unsatisfactory. " + manager.getName() + " is considering termination.");
-
-                            if (demandFactor > 1.2) {
-                                System.out.println("However, due to high demand recently, " + manager.getName() + " is willing to give you another chance. +20 rep");
-                                player.changeReputation(20); // small rep boost
+                    if (rules.isReviewDue(player)) {
+                        // perfomance review every 10 days (rules.reviewInterval)
+                        out.println("\n--- Performance Review ---");
+                        // Running stats, so this doesn't rescan the history
+                        double trend = demandHistory.getTrend();
+                        out.println("Store demand has averaged " + String.format("%.2f", demandHistory.getMean()) + " over your career and is "
+                            + (trend > 0.05 ? "picking up" : trend < -0.05 ? "slowing down" : "holding steady")
+                            + " lately (" + String.format("%.2f", demandHistory.getEwma()) + ").");
+
+                        GameRules.Review review = rules.review(player, demandFactor);
+                        if (review.isFired() || review == GameRules.Review.SECOND_CHANCE || review == GameRules.Review.BRIBE) {
+                            out.println("Your performance is unsatisfactory. " + manager.getName() + " is considering termination.");
+                        }
+                        switch (review) {
+                            case BONUS:
+                                out.println("Excellent work! Your reputation with " + manager.getName() + " has earned you a $" + String.format("%.0f", rules.bonus) + " bonus!");
+                                recordEvent(Journal.REVIEW, null, demandFactor);
+                                break;
+                            case SOLID:
+                                out.println("Good job! Your reputation with " + manager.getName() + " remains solid.");
+                                break;
+                            case WARNING:
+                                out.println("You need to improve your performance. Your reputation with " + manager.getName() + " is slipping. " + manager.getName() + 
+                                    " suggests using Energy Drinks to maintain stamina during shifts.");
+                                break;
+                            case SECOND_CHANCE:
+                                out.println("However, due to high demand recently, " + manager.getName() + " is willing to give you another chance. +" + rules.secondChanceRep + " rep");
+                                recordEvent(Journal.REVIEW, null, demandFactor);
                                 continue;
-                            }
-
-                            if (player.getMoney() >= 20.0 && demandFactor <= 1.0) {
-                                System.out.println("Low demand. You pay a $20 bribe to " + manager.getName() + " to keep your job.");
-                                player.changeMoney(-20.0);
-                                player.changeReputation(10); // small rep boost
-                            } else {
-                                System.out.println("You cannot afford to bribe " + manager.getName() + ". You have been terminated.");
+                            case BRIBE:
+                                out.println("Low demand. You pay a $" + String.format("%.0f", rules.bribe) + " bribe to " + manager.getName() + " to keep your job.");
+                                recordEvent(Journal.REVIEW, null, demandFactor);
+                                break;
+                            default:
+                                out.println("You cannot afford to bribe " + manager.getName() + ". You have been terminated.");
+                                shutdown(); // saves and releases everything, like quit
                                 running = false;
                                 break;
-                            }
                         }
+                        if (!running) break;
                     }
-                    System.out.println("Day " + player.getShiftsWorked() + " is now complete.");
+                    out.println("Day " + player.getShiftsWorked() + " is now complete.");
 
                     randomizeWeather();                 // new weather for next shift
                     break;
@@ -250,16 +450,19 @@ public class Game {
 
                 case "shop": {
                     // Enumerate shop items
-                    System.out.println("Shop items:");
-                    shop.getPriceList().forEach((k,v) -> System.out.println(k + " - $" + String.format("%.2f", v)));
+                    out.println("Shop items:");
+                    shop.getPriceList().forEach((k,v) -> out.println(k + " - $" + String.format("%.2f", v)));
 
                     // Prompt for item to buy
-                    System.out.print("Enter item name to buy: ");
-                    String item = in.nextLine().trim().toLowerCase();
+                    out.print("Enter item name to buy: ");
+                    String item = readLine(in).trim().toLowerCase();
 
                     // Attempt purchase
-                    if (shop.buy(player, item)) System.out.println("Bought " + item);
-                    else System.out.println("Can't buy " + item + ". Check funds or spelling.");
+                    if (shop.buy(player, item)) {
+                        out.println("Bought " + item);
+                        recordEvent(Journal.PURCHASE, item, 0.0);
+                    }
+                    else out.println("Can't buy " + item + ". Check funds or spelling.");
 
                     break;
                 }
@@ -267,37 +470,40 @@ public class Game {
 
 
                 case "use": {
-                    System.out.println("Use what? (e.g. ");
+                    out.println("Use what? (e.g. ");
                     for (String itemName : shop.getItemNames()) {
-                        System.out.print(itemName + ", ");
+                        out.print(itemName + ", ");
                     }
-                    System.out.print(")\n> "); // end parentheses and prompt caret
+                    out.print(")\n> "); // end parentheses and prompt caret
 
-                    String item = in.nextLine().trim().toLowerCase();
+                    String item = readLine(in).trim().toLowerCase();
 
                     if (item.equals("energy drink")) {
                         if (new EnergyDrink().use(player)) {
-                            System.out.println("You used an Energy Drink. Stamina restored to " + player.getStamina() + ".");
+                            out.println("You used an Energy Drink. Stamina restored to " + player.getStamina() + ".");
+                            recordEvent(Journal.USE, item, 0.0);
                         } else {
-                            System.out.println("You don't have an Energy Drink.");
+                            out.println("You don't have an Energy Drink.");
                         }
                     } else if (item.equals("meth")) {
                         if (new Meth().use(player)) {
-                            System.out.println("You used some Meth. Reputation decreased to " + player.getReputation() + ".");
-                            System.out.println("Be careful, using Meth can have consequences.");
-                            System.out.println("Your stamina is now " + player.getStamina() + ".");
+                            out.println("You used some Meth. Reputation decreased to " + player.getReputation() + ".");
+                            out.println("Be careful, using Meth can have consequences.");
+                            out.println("Your stamina is now " + player.getStamina() + ".");
+                            recordEvent(Journal.USE, item, 0.0);
                         } else {
-                            System.out.println("You don't have any Meth.");
+                            out.println("You don't have any Meth.");
                         }
                     } else if (item.equals("name tag")) {
                         if (new NameTag().use(player)) {
-                            System.out.println("You used a Name Tag. Your name is now: " + player.getName() + ".");
-                            System.out.println("Your coworkers recognize you better now. Reputation increased to " + player.getReputation() + ".");
+                            out.println("You used a Name Tag. Your name is now: " + player.getName() + ".");
+                            out.println("Your coworkers recognize you better now. Reputation increased to " + player.getReputation() + ".");
+                            recordEvent(Journal.USE, item, 0.0);
                         } else {
-                            System.out.println("You don't have a Name Tag.");
+                            out.println("You don't have a Name Tag.");
                         }
                     } else { 
-                        System.out.println("Unknown item.");
+                        out.println("Unknown item.");
                     }
 
                     break;
@@ -306,13 +512,7 @@ public class Game {
 
 
                 case "quit": {
-                    // Kill the background thread and save final state
-                    GameData gameData = new GameData(player, manager, npcs, baseDemandFactor, demandHistory);
-                    save.updateGameData(gameData);
-                    save.stopAutosave();
-                    
-                    // Final save
-                    save.saveGame(gameData);
+                    shutdown();
 
                     // Exit main loop
                     running = false;
@@ -320,11 +520,58 @@ public class Game {
                 }
 
                 // if no recognized command, fail gracefully and try again
-                default: { System.out.println("Unknown command."); }
+                default: { out.println("Unknown command."); }
             }
         }
 
-        System.out.println("Goodbye — final status:\n" + player);
+        out.println("Goodbye — final status:\n" + player);
+        out.flush(); // closing the input closes a server session's connection
         in.close();
+        session.close();
+    }
+
+    // Saves, stops what this game started and waits for the saves to be written
+    private void shutdown() {
+        // Queue the final save first so it writes while everything else shuts down
+        save.stopAutosave();
+        if (journal != null) {
+            snapshotJournal();
+        } else {
+            save.saveGame(snapshotState());
+        }
+
+        // Stops fetching, keeps the weather cache warm for the next run, and waits for the final save (and
+        // the journal compaction after it)
+        if (ownsServices) services.close();
+
+        save.close();
+        save.printNotices();
+        if (journal != null) journal.close();
+    }
+
+    // Next line of input. When the input ends (end of file, or a server client hanging up) the game is
+    // saved like on quit before the NoSuchElementException is passed on.
+    private String readLine(Scanner in) {
+        out.flush(); // show the prompt
+        try {
+            return session.readLine(in);
+        } catch (NoSuchElementException e) {
+            shutdown();
+            throw e;
+        }
+    }
+
+    private static SessionLog openSessionLog(GameOptions options, String[] args) {
+        if (!options.has("record")) return SessionLog.LIVE;
+        String path = options.get("record", "true");
+        File file = new File(path.equals("true") ? "sessions/session-" + System.currentTimeMillis() + ".log" : path);
+        try {
+            SessionLog log = SessionLog.record(file, args);
+            System.out.println("Recording this session to " + file);
+            return log;
+        } catch (IOException e) {
+            System.out.println("Failed to start recording: " + e.getMessage() + ". Playing without recording.");
+            return SessionLog.LIVE;
+        }
     }
 }
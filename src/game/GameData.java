@@ -1,7 +1,6 @@
 package game;
 
 import java.util.HashMap;
-import java.util.ArrayList;
 
 import characters.*;
 
@@ -23,9 +22,18 @@ public class GameData {
     // Game configuration and state
     public double baseDemandFactor;
     public long gameTimestamp;  // When the game was saved
+    public long journalSeq;     // Last journal record included in this save (event-sourced mode)
+    public int schemaVersion;   // Version of the format this was read from (0 if it was never saved)
+    public long stateVersion;   // Save's change count this state was taken at (0 if unknown); not saved
 
-    // Daily demand factor history (one entry per day/shift)
-    public ArrayList<Double> demandHistory;
+    // Daily demand factor history (one entry per day/shift). Immutable, so it's shared rather than copied.
+    public ShiftSeries demandHistory;
+
+    // Earnings, and stamina and reputation at the end of each shift, for CareerAnalytics. Older saves
+    // don't have these, so they can be shorter than demandHistory.
+    public ShiftSeries earningsHistory;
+    public ShiftSeries staminaHistory;
+    public ShiftSeries reputationHistory;
     
     // Constructor - initializes empty collections
     public GameData() {
@@ -33,13 +41,16 @@ public class GameData {
         this.npcsData = new HashMap<>();
         this.baseDemandFactor = 1.0;
         this.gameTimestamp = System.currentTimeMillis();
-        this.demandHistory = new java.util.ArrayList<>();
+        this.demandHistory = ShiftSeries.EMPTY;
+        this.earningsHistory = ShiftSeries.EMPTY;
+        this.staminaHistory = ShiftSeries.EMPTY;
+        this.reputationHistory = ShiftSeries.EMPTY;
         this.managerName = null;
         this.managerAge = 0;
     }
     
     // Construct GameData from current game state
-    public GameData(Player player, Manager manager, HashMap<String, NPC> npcs, double baseDemandFactor, ArrayList<Double> demandHistory) {
+    public GameData(Player player, Manager manager, HashMap<String, NPC> npcs, double baseDemandFactor, ShiftSeries demandHistory) {
         this.playerData = player;
         
         if (manager != null) {
@@ -56,8 +67,10 @@ public class GameData {
         
         this.baseDemandFactor = baseDemandFactor;
         this.gameTimestamp = System.currentTimeMillis();
-        this.demandHistory = new java.util.ArrayList<>();
-        if (demandHistory != null) this.demandHistory.addAll(demandHistory);
+        this.demandHistory = demandHistory != null ? demandHistory : ShiftSeries.EMPTY;
+        this.earningsHistory = ShiftSeries.EMPTY;
+        this.staminaHistory = ShiftSeries.EMPTY;
+        this.reputationHistory = ShiftSeries.EMPTY;
     }
     
     // Nested data class for NPC state
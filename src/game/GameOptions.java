@@ -0,0 +1,60 @@
+package game;
+
+import java.util.HashMap;
+
+// Command-line options for Game, given as --name=value (or just --name for on/off switches)
+public class GameOptions {
+    private final HashMap<String, String> values = new HashMap<>();
+
+    public GameOptions(String[] args) {
+        if (args == null) return;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                System.out.println("Ignoring unknown argument: " + arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) values.put(arg.substring(2), "true");
+            else values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        try {
+            return has(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid --" + name + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        try {
+            return has(name) ? Long.parseLong(values.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid --" + name + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        try {
+            return has(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid --" + name + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public boolean getFlag(String name) {
+        return Boolean.parseBoolean(values.getOrDefault(name, "false"));
+    }
+}
@@ -0,0 +1,114 @@
+package game;
+
+import characters.Player;
+
+// The game's balance rules outside of Player.workShift: how weather turns into a demand factor, and what
+// the performance review every few shifts does. Game and the headless simulation both go through these, so
+// a tuned value plays exactly as it simulates. Every number can be overridden from the command line (see
+// the constructor); DEFAULT is the game as shipped.
+public final class GameRules {
+    public static final GameRules DEFAULT = new GameRules(new GameOptions(null));
+
+    // What a performance review decided; the player has already been rewarded or penalized accordingly
+    public enum Review {
+        BONUS,          // reputation high enough for a bonus
+        SOLID,
+        WARNING,
+        SECOND_CHANCE,  // would have been fired, but demand is high so reputation gets a boost
+        BRIBE,          // would have been fired, paid the manager off
+        FIRED_BROKE,    // would have been fired, couldn't afford the bribe
+        FIRED_BUSY;     // would have been fired, demand too high for a bribe but not high enough for a second chance
+
+        public boolean isFired() { return this == FIRED_BROKE || this == FIRED_BUSY; }
+    }
+
+    // Demand: temperature (F) and pressure (hPa) modifiers
+    public final double hotTemp, hotBoost;
+    public final double coldTemp, coldBoost;
+    public final double lowPressure, lowPressureFactor;
+    public final double fairPressure, fairPressureBoost;
+    public final double goodPressure, goodPressureBoost;
+
+    // Performance review
+    public final int reviewInterval;     // shifts between reviews
+    public final int bonusRep;
+    public final double bonus;
+    public final int solidRep;
+    public final int warningRep;
+    public final double secondChanceDemand;
+    public final int secondChanceRep;
+    public final double bribe;
+    public final double bribeMaxDemand;
+    public final int bribeRep;
+
+    // Defaults, each overridable as --<name>=<value>
+    public GameRules(GameOptions options) {
+        hotTemp = options.getDouble("hot-temp", 80);
+        hotBoost = options.getDouble("hot-boost", 1.3);
+        coldTemp = options.getDouble("cold-temp", 40);
+        coldBoost = options.getDouble("cold-boost", 1.15);
+        lowPressure = options.getDouble("low-pressure", 1004);
+        lowPressureFactor = options.getDouble("low-pressure-factor", 0.9);
+        fairPressure = options.getDouble("fair-pressure", 1010);
+        fairPressureBoost = options.getDouble("fair-pressure-boost", 1.1);
+        goodPressure = options.getDouble("good-pressure", 1013);
+        goodPressureBoost = options.getDouble("good-pressure-boost", 1.3);
+
+        reviewInterval = Math.max(1, options.getInt("review-every", 10));
+        bonusRep = options.getInt("bonus-rep", 80);
+        bonus = options.getDouble("bonus", 50.0);
+        solidRep = options.getInt("solid-rep", 60);
+        warningRep = options.getInt("warning-rep", 20);
+        secondChanceDemand = options.getDouble("second-chance-demand", 1.2);
+        secondChanceRep = options.getInt("second-chance-rep", 20);
+        bribe = options.getDouble("bribe", 20.0);
+        bribeMaxDemand = options.getDouble("bribe-max-demand", 1.0);
+        bribeRep = options.getInt("bribe-rep", 10);
+    }
+
+    // Multiplies base demand by weather modifiers; temperature affects customer traffic, pressure indicates weather quality
+    public double demandFactor(double baseDemandFactor, double temp, double pressure) {
+        double demandFactor = baseDemandFactor;
+
+        // hot increases demand slightly
+        if (temp > hotTemp) demandFactor *= hotBoost;
+        else if (temp < coldTemp) demandFactor *= coldBoost;
+
+        // low pressure = bad weather = less customers
+        if (pressure < lowPressure) demandFactor *= lowPressureFactor;
+
+        // high pressure = good weather = more customers
+        if (pressure > fairPressure && pressure < goodPressure) demandFactor *= fairPressureBoost;
+
+        // super good weather = lots of customers
+        if (pressure >= goodPressure) demandFactor *= goodPressureBoost;
+
+        return demandFactor;
+    }
+
+    public boolean isReviewDue(Player player) {
+        return player.getShiftsWorked() % reviewInterval == 0;
+    }
+
+    // Run a performance review after a shift worked at demandFactor, applying its effects to the player
+    public Review review(Player player, double demandFactor) {
+        int rep = player.getReputation();
+        if (rep >= bonusRep) {
+            player.changeMoney(bonus);
+            return Review.BONUS;
+        }
+        if (rep >= solidRep) return Review.SOLID;
+        if (rep >= warningRep) return Review.WARNING;
+
+        if (demandFactor > secondChanceDemand) {
+            player.changeReputation(secondChanceRep);
+            return Review.SECOND_CHANCE;
+        }
+        if (player.getMoney() >= bribe && demandFactor <= bribeMaxDemand) {
+            player.changeMoney(-bribe);
+            player.changeReputation(bribeRep);
+            return Review.BRIBE;
+        }
+        return player.getMoney() < bribe ? Review.FIRED_BROKE : Review.FIRED_BUSY;
+    }
+}
@@ -0,0 +1,367 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// Hosts many games in one JVM, one session per TCP connection:
+//
+//   java -cp <classpath> game.GameServer [--port=n] [--host=addr] [--max-sessions=n] [--threads=virtual|platform]
+//                                        [--save-threads=n] [game options]
+//
+// Connect with e.g. `nc localhost 7777`. A session asks for a save slot (its saves go to saves/players/<slot>/,
+// or with --saves=sqlite to that slot in saves/players/saves.db) and then plays exactly like the console game. Every session has its own player, manager and NPCs, while
+// the weather source, cache and prefetcher, the name reservoir and the save threads (--save-threads writers,
+// 4 by default) are shared (see GameServices). Game options such as --weather, --saves and the rule overrides apply to every session;
+// --journal doesn't, since each journal keeps a sync thread.
+//
+// Each session runs on a thread of its own that mostly waits for the next command. On Java 21 and later
+// that's a virtual thread, so idle sessions cost a few KB of heap rather than a platform thread's stack;
+// earlier JVMs (or --threads=platform) use a bounded pool of platform threads with small stacks, and
+// --max-sessions defaults lower to match. Connections beyond --max-sessions are told the server is full.
+//
+// Type `status` on the server's console for the session count, threads and heap per session, and `stop`
+// to save every session and shut down.
+public class GameServer {
+    private static final int DEFAULT_PORT = 7777;
+    private static final int MAX_VIRTUAL_SESSIONS = 10_000;
+    private static final int MAX_PLATFORM_SESSIONS = 256;
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+    private static final int OUTPUT_BUFFER_BYTES = 512; // a screenful of game output is rarely more
+    private static final int INPUT_BUFFER_BYTES = 128; // commands are a few bytes each
+    private static final int WEATHER_HISTORY = 2; // sessions only look at the latest forecast
+    private static final int SAVE_THREADS = 4; // writers shared by every session's saves
+    private static final Pattern SLOT = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final GameServices services;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessionThreads;
+    private final boolean virtualThreads;
+    private final int maxSessions;
+    private final Semaphore sessionPermits;
+    private final Set<String> activeSlots = ConcurrentHashMap.newKeySet();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger peakSessions = new AtomicInteger();
+    private volatile boolean stopping = false;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private long baselineHeap; // heap in use with no sessions, for the per-session estimate
+
+    public GameServer(GameServices services, ServerSocket serverSocket, boolean preferVirtual, int maxSessions) {
+        this.services = services;
+        this.serverSocket = serverSocket;
+        ExecutorService virtual = preferVirtual ? virtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.maxSessions = maxSessions > 0 ? maxSessions : virtualThreads ? MAX_VIRTUAL_SESSIONS : MAX_PLATFORM_SESSIONS;
+        this.sessionThreads = virtual != null ? virtual : platformThreadPool(this.maxSessions);
+        this.sessionPermits = new Semaphore(this.maxSessions);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() where the JVM has it (Java 21+), looked up reflectively so
+    // the game still builds for and runs on Java 11; null otherwise
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Up to max platform threads, started as sessions arrive and retired after a minute idle. The permits
+    // stop more than max sessions being submitted, so the queue only holds one whose thread is on its way
+    // back to the pool.
+    private static ExecutorService platformThreadPool(int max) {
+        AtomicInteger threadId = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(max, max, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(null, r, "Session-" + threadId.incrementAndGet(), PLATFORM_STACK_BYTES);
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // Accept connections until stopped, and return once every session has saved
+    public void serve() {
+        baselineHeap = usedHeapAfterGc();
+        System.out.println("Serving on " + serverSocket.getLocalSocketAddress() + ", up to " + maxSessions + " sessions on "
+            + (virtualThreads ? "virtual" : "platform") + " threads");
+        while (!stopping) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!stopping) System.out.println("Failed to accept connection: " + e.getMessage());
+                continue;
+            }
+            if (!sessionPermits.tryAcquire()) {
+                reject(socket, "Server full, try again later.");
+                continue;
+            }
+            connections.add(socket);
+            peakSessions.accumulateAndGet(maxSessions - sessionPermits.availablePermits(), Math::max);
+            sessionThreads.execute(() -> runSession(socket));
+        }
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reject(Socket socket, String message) {
+        try (socket) {
+            socket.getOutputStream().write((message + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ignored) {
+        }
+    }
+
+    // One connection, start to finish: pick a save slot, then play until the player quits or hangs up
+    private void runSession(Socket socket) {
+        String slot = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            PrintWriter out = new PrintWriter(writer(socket.getOutputStream()));
+
+            out.print("Welcome to Supermarket Simulator. Save slot (letters, digits, - or _): ");
+            out.flush();
+            slot = readSlot(in);
+            if (slot == null) return;
+            if (!SLOT.matcher(slot).matches()) {
+                out.println("Invalid save slot.");
+                out.flush();
+                slot = null;
+                return;
+            }
+            if (!activeSlots.add(slot)) {
+                out.println("Slot '" + slot + "' is already being played.");
+                out.flush();
+                slot = null;
+                return;
+            }
+            System.out.println("Session '" + slot + "' started from " + socket.getRemoteSocketAddress() + " (" + sessionCount() + " active)");
+
+            try {
+                new Game(services, slot, reader(in), out);
+                out.flush();
+                System.out.println("Session '" + slot + "' quit");
+            } catch (NoSuchElementException e) {
+                System.out.println("Session '" + slot + "' disconnected"); // saved on the way out
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!(e instanceof SocketException && stopping)) {
+                System.out.println("Session " + (slot != null ? "'" + slot + "' " : "") + "failed: " + e);
+            }
+        } finally {
+            if (slot != null) activeSlots.remove(slot);
+            connections.remove(socket);
+            sessionPermits.release();
+        }
+    }
+
+    // Text streams with small buffers. An idle session is mostly its buffers: a PrintStream or an
+    // InputStreamReader would hold 8-16 KB each, where these hold a few hundred bytes.
+    private static Writer writer(OutputStream out) {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return Channels.newWriter(Channels.newChannel(out), encoder, OUTPUT_BUFFER_BYTES);
+    }
+
+    private static Reader reader(InputStream in) {
+        return new InputReader(in);
+    }
+
+    // The connection's input decoded as UTF-8 for the game's Scanner. The JDK's readers (Channels.newReader,
+    // and InputStreamReader before Java 21) hold a monitor while they wait for input, which on a virtual
+    // thread pins its carrier thread: with as many carriers as cores, a few idle sessions would stall every
+    // other one. This one takes no locks, so an idle session's virtual thread just parks.
+    private static final class InputReader extends Reader {
+        private final InputStream in;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocate(INPUT_BUFFER_BYTES);
+        private final CharBuffer pair = CharBuffer.allocate(2); // for reads of one char, which may decode to two
+        private boolean eof, done;
+
+        InputReader(InputStream in) {
+            this.in = in;
+            bytes.flip(); // nothing read yet
+            pair.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!pair.hasRemaining()) {
+                if (len > 1) return decode(CharBuffer.wrap(cbuf, off, len));
+                pair.clear();
+                int n = decode(pair);
+                pair.flip();
+                if (n < 0) return -1;
+            }
+            cbuf[off] = pair.get(); // the second half of a pair, or a read of one char
+            return 1;
+        }
+
+        // Decodes what's buffered into chars, reading more first if nothing is; -1 at the end of input
+        private int decode(CharBuffer chars) throws IOException {
+            int start = chars.position();
+            while (true) {
+                if (!done) {
+                    CoderResult result = decoder.decode(bytes, chars, eof);
+                    done = eof && result.isUnderflow() && decoder.flush(chars).isUnderflow(); // the decoder is finished
+                }
+                if (chars.position() > start) return chars.position() - start;
+                if (done) return -1;
+
+                bytes.compact();
+                int n = in.read(bytes.array(), bytes.position(), bytes.remaining());
+                if (n < 0) eof = true;
+                else bytes.position(bytes.position() + n);
+                bytes.flip();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // The slot line, read a byte at a time so nothing meant for the game is buffered here; null on hang-up
+    private static String readSlot(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) return null;
+            if (line.length() > 64) return line.toString(); // too long to be valid
+            if (b != '\r') line.append((char) b);
+        }
+        return line.toString().trim();
+    }
+
+    public int sessionCount() {
+        return maxSessions - sessionPermits.availablePermits();
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // Session count, threads and heap, with the heap per session over what the server used with none
+    public String status() {
+        int sessions = sessionCount();
+        long heap = usedHeapAfterGc();
+        String perSession = sessions == 0 ? "" : String.format(", ~%.1f KB per session", (heap - baselineHeap) / 1024.0 / sessions);
+        return String.format("%d sessions (peak %d), %d JVM threads, heap %.1f MB after GC%s", sessions, peakSessions.get(),
+            ManagementFactory.getThreadMXBean().getThreadCount(), heap / 1048576.0, perSession);
+    }
+
+    // Stop accepting, hang up on every session (each saves on the way out) and shut down the services
+    public synchronized void stop() {
+        if (stopping) return;
+        stopping = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.shutdownInput(); // the game sees the end of its input and saves
+            } catch (IOException ignored) {
+            }
+        }
+        sessionThreads.shutdown();
+        try {
+            if (!sessionThreads.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.out.println("Timed out waiting for sessions to save");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        services.close();
+        stopped.countDown();
+    }
+
+    // Server console: status and stop
+    private void readConsole() {
+        try (BufferedReader console = new BufferedReader(new InputStreamReader(System.in))) {
+            for (String line; (line = console.readLine()) != null; ) {
+                switch (line.trim().toLowerCase()) {
+                    case "status":
+                        System.out.println(status());
+                        break;
+                    case "stop":
+                        stop();
+                        return;
+                    case "":
+                        break;
+                    default:
+                        System.out.println("Commands: status, stop");
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to read console: " + e.getMessage());
+        }
+        // Console closed (e.g. started in the background): keep serving
+    }
+
+    public static void main(String[] args) {
+        GameOptions options = new GameOptions(args);
+        if (options.getFlag("journal")) System.out.println("--journal isn't supported by the server; sessions use regular saves.");
+
+        ServerSocket serverSocket;
+        try {
+            serverSocket = new ServerSocket(options.getInt("port", DEFAULT_PORT), 1024, InetAddress.getByName(options.get("host", "127.0.0.1")));
+        } catch (IOException e) {
+            System.out.println("Failed to listen: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        boolean preferVirtual = !options.get("threads", "virtual").equals("platform");
+        GameServices services = new GameServices(options, SessionLog.LIVE, options.getInt("weather-history", WEATHER_HISTORY),
+            options.getInt("save-threads", SAVE_THREADS));
+        GameServer server = new GameServer(services, serverSocket, preferVirtual,
+            options.getInt("max-sessions", 0));
+        if (preferVirtual && !server.virtualThreads) System.out.println("Virtual threads need Java 21 or later; using platform threads.");
+
+        Thread console = new Thread(server::readConsole, "ServerConsole");
+        console.setDaemon(true);
+        console.start();
+        server.serve();
+        System.out.println(server.status());
+        System.out.println("Server stopped.");
+    }
+}
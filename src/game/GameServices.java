@@ -0,0 +1,249 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import namegenerator.NameAPIResponse;
+import namegenerator.NameGenerator;
+import weather.FixtureWeatherSource;
+import weather.OpenMeteoResponse;
+import weather.OpenMeteoSource;
+import weather.SyntheticWeatherSource;
+import weather.Weather;
+import weather.WeatherCache;
+import weather.WeatherPrefetcher;
+import weather.WeatherSource;
+
+// What a game needs besides its console: the rules and shop, weather, names, and somewhere to save. A game
+// played on its own makes a set for itself and closes it when it quits. GameServer makes one set for all of
+// its sessions, so the weather source, cache and prefetcher, the name reservoir and the save threads are
+// shared, and each session only pays for its own characters, forecasts and save slot.
+//
+// Replaying a session (see SessionLog), the weather comes from the log, there are no names to fetch, and
+// saves go nowhere.
+public class GameServices {
+    private static final double START_LAT = 40.7128, START_LON = -74.0060; // NY city
+
+    final GameOptions options;
+    final GameRules rules;
+    final Shop shop;
+    private final SessionLog session;
+    private final Save.Format saveFormat;
+    private final Save.Pipeline savePipeline;
+    // Shared by server sessions' saves: one database for every slot with --saves=sqlite (opened by the first
+    // session), or one retention thread for every slot's directory with files
+    private final Object saveDbLock = new Object();
+    private SqliteSaveStore sharedSaveDb;
+    private final ExecutorService sharedCompactor = FileSaveStore.newCompactor();
+    private final int weatherHistory; // forecasts each game keeps
+
+    // Every game starts in NY, so a local source's forecast for it is shared by the games started within
+    // the same hour (a remote source's is shared through the cache)
+    private final Object startForecastLock = new Object();
+    private OpenMeteoResponse startForecast;
+    private long startForecastHour;
+
+    // Only changed under this object's lock (the source and cache together, if the source fails), but read
+    // without it, so a game fetching its first forecast never holds up the others
+    private volatile WeatherSource weatherSource;
+    private volatile WeatherCache weatherCache;
+    private volatile WeatherPrefetcher weatherPrefetcher;
+    private NameGenerator nameGenerator;
+
+    public GameServices(GameOptions options, SessionLog session) {
+        this(options, session, Weather.DEFAULT_HISTORY);
+    }
+
+    public GameServices(GameOptions options, SessionLog session, int weatherHistory) {
+        this(options, session, weatherHistory, 1);
+    }
+
+    // saveThreads writers are shared by every save opened here (a single game only ever needs one)
+    public GameServices(GameOptions options, SessionLog session, int weatherHistory, int saveThreads) {
+        this.options = options;
+        this.weatherHistory = Math.max(1, weatherHistory);
+        this.rules = new GameRules(options);
+        this.shop = new Shop(options);
+        this.session = session;
+        this.saveFormat = options.get("save-format", "json").equals("binary") ? Save.Format.BINARY : Save.Format.JSON;
+        this.savePipeline = new Save.Pipeline(saveThreads);
+
+        // A replayed session's forecasts all come from its log: nothing is fetched, cached or prefetched
+        weatherSource = session.isReplaying() ? session.replayedWeather() : createWeatherSource(options);
+        // Caching and prefetching only pay off when fetches go over the network
+        if (weatherSource.isRemote()) weatherCache = new WeatherCache(new File("cache/weather.cache"));
+        if (!session.isReplaying()) initNameGeneratorAPI(); // a replay's names come from the log
+    }
+
+    // Pick where weather comes from: --weather=live (default), fixture or synthetic
+    private static WeatherSource createWeatherSource(GameOptions options) {
+        String kind = options.get("weather", "live");
+        try {
+            switch (kind) {
+                case "fixture":
+                    return new FixtureWeatherSource(new File(options.get("weather-fixture", "external/openmeteo_api_response.txt")));
+                case "synthetic":
+                    return new SyntheticWeatherSource(options.getLong("seed", System.nanoTime()));
+                case "live":
+                    return new OpenMeteoSource();
+                default:
+                    System.out.println("Unknown weather source '" + kind + "', using live weather.");
+                    return new OpenMeteoSource();
+            }
+        } catch (Exception e) {
+            System.out.println("Failed to load " + kind + " weather: " + e.getMessage());
+            return new OpenMeteoSource();
+        }
+    }
+
+    private void initNameGeneratorAPI() {
+        try {
+            nameGenerator = new NameGenerator();
+            nameGenerator.getNewResponse();
+        } catch (Exception e) {
+            System.out.println("Failed to initialize name generator API: " + e.getMessage());
+        }
+
+        // for debugging, print all generated names
+        // for (NameAPIResponse.NameData nd : nameGenerator.getLatestResponse().getGeneratedNames()) { System.out.println(nd); }
+        // System.out.println(nameGenerator.getReservoirSize() + " names in reservoir");
+    }
+
+    // Weather for a new game, starting in NY: its own location and recent forecasts, sharing the source and
+    // cache with every other game. The first remote one also starts the prefetcher. The first forecast is
+    // fetched without holding any lock, so games starting together fetch in parallel.
+    public Weather newWeather() {
+        WeatherSource source;
+        WeatherCache cache;
+        synchronized (this) {
+            source = weatherSource;
+            cache = weatherCache;
+        }
+
+        Weather weather;
+        try {
+            weather = new Weather(startSharing(source), START_LAT, START_LON, cache, weatherHistory);
+        } catch (Exception e) {
+            // No network? Keep playing on generated weather rather than crashing on the first shift. Only
+            // the first game to fail switches the source; the others use what it switched to.
+            synchronized (this) {
+                if (weatherSource == source) {
+                    System.out.println("Failed to initialize weather API: " + e.getMessage() + ". Using offline weather.");
+                    weatherSource = new SyntheticWeatherSource(System.nanoTime());
+                    weatherCache = null;
+                }
+                source = weatherSource;
+                cache = weatherCache;
+            }
+            try {
+                weather = new Weather(startSharing(source), START_LAT, START_LON, cache, weatherHistory);
+            } catch (Exception unreachable) {
+                throw new IllegalStateException(unreachable);
+            }
+        }
+
+        // Fetch the next few shifts' weather in the background (any game's Weather can fetch for all of them)
+        if (weatherPrefetcher == null && source.isRemote()) {
+            synchronized (this) {
+                if (weatherPrefetcher == null) {
+                    WeatherPrefetcher prefetcher = new WeatherPrefetcher(weather, 4, 2);
+                    prefetcher.start();
+                    weatherPrefetcher = prefetcher;
+                }
+            }
+        }
+        return weather;
+    }
+
+    // The source, except that a local one's NY forecast comes from startForecast. A replay's source is left
+    // alone, since every fetch is its next logged forecast.
+    private WeatherSource startSharing(WeatherSource source) {
+        if (source.isRemote() || session.isReplaying()) return source;
+        return (lat, lon) -> {
+            if (lat != START_LAT || lon != START_LON) return source.fetch(lat, lon);
+            synchronized (startForecastLock) {
+                long hour = System.currentTimeMillis() / 3_600_000;
+                if (startForecast == null || startForecastHour != hour) {
+                    startForecast = source.fetch(lat, lon);
+                    startForecastHour = hour;
+                }
+                return startForecast;
+            }
+        };
+    }
+
+    // A forecast for a random location fetched ahead of time, or null if none is ready
+    public OpenMeteoResponse pollPrefetched() {
+        WeatherPrefetcher prefetcher = weatherPrefetcher;
+        return prefetcher != null ? prefetcher.poll() : null;
+    }
+
+    // A name from the reservoir, or null if there are none (or no name generator)
+    public NameAPIResponse.NameData takeName() {
+        return nameGenerator != null ? nameGenerator.takeName() : null;
+    }
+
+    // Saves for a game: in saves/ (or saves/saves.db), or for a server session, in its slot: its own
+    // directory under saves/players/, or its rows in the server's one database (saves/players/saves.db
+    // unless --save-db says otherwise). Every save shares this set's writer and autosave threads, and
+    // reports its saves and loads to out, the game's console.
+    public Save openSave(String slot, PrintWriter out) {
+        return new Save(createSaveStore(slot), saveFormat, savePipeline, out);
+    }
+
+    // Pick where saves go: --saves=files (default, one JSON file each in the directory) or sqlite
+    private SaveStore createSaveStore(String slot) {
+        if (session.isReplaying()) return new SessionLog.DiscardSaveStore(); // a replay mustn't touch real saves
+        File dir = slot == null ? new File("saves/") : new File("saves/players/", slot);
+        String kind = options.get("saves", "files");
+        if (kind.equals("sqlite")) {
+            try {
+                if (slot == null) return new SqliteSaveStore(new File(options.get("save-db", "saves/saves.db")));
+                synchronized (saveDbLock) {
+                    if (sharedSaveDb == null) sharedSaveDb = new SqliteSaveStore(new File(options.get("save-db", "saves/players/saves.db")));
+                    return sharedSaveDb.slot(slot);
+                }
+            } catch (IOException e) {
+                System.out.println(e.getMessage() + ". Saving to files instead.");
+            }
+        } else if (!kind.equals("files")) {
+            System.out.println("Unknown save store '" + kind + "', saving to files.");
+        }
+        RetentionPolicy retention = new RetentionPolicy(
+            Math.max(1, options.getInt("keep-saves", 10)),
+            options.getInt("keep-daily", 7),
+            options.getInt("keep-weekly", 4));
+        return slot == null ? new FileSaveStore(dir, retention) : new FileSaveStore(dir, retention, sharedCompactor);
+    }
+
+    // Stops the background fetching, keeps the weather cache warm for the next run, and waits for queued
+    // saves to finish writing
+    public void close() {
+        synchronized (this) {
+            if (weatherPrefetcher != null) weatherPrefetcher.shutdown();
+        }
+        if (nameGenerator != null) nameGenerator.shutdown();
+
+        if (weatherCache != null) {
+            try {
+                weatherCache.flush();
+            } catch (IOException e) {
+                System.out.println("Failed to write weather cache: " + e.getMessage());
+            }
+        }
+
+        savePipeline.shutdown();
+        sharedCompactor.shutdown();
+        try {
+            sharedCompactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (saveDbLock) {
+            if (sharedSaveDb != null) sharedSaveDb.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package game;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import characters.*;
+
+// Immutable, versioned view of the game state at one moment. Game publishes a new one after every change
+// through an AtomicReference, and the autosaver serializes whichever is current, so a save is always a
+// consistent point in time and the game loop never waits on a lock. Game reports each version to Save as
+// it publishes it, and the GameData built from a snapshot carries the same version, so Save knows exactly
+// which changes a write covers. Building one is cheap: the player's
+// inventory is copy-on-write and the per-shift histories are immutable ShiftSeries, so both are shared
+// rather than copied.
+public final class GameSnapshot {
+    public final long version;
+    public final PlayerState player;
+    public final String managerName;
+    public final int managerAge;
+    public final Map<String, GameData.NPCData> npcs;
+    public final double baseDemandFactor;
+    public final ShiftSeries demandHistory;
+    public final ShiftSeries earningsHistory;
+    public final ShiftSeries staminaHistory;
+    public final ShiftSeries reputationHistory;
+    public final long takenAt;
+
+    public GameSnapshot(long version, Player player, Manager manager, Map<String, GameData.NPCData> npcs,
+                        double baseDemandFactor, ShiftSeries demandHistory, ShiftSeries earningsHistory,
+                        ShiftSeries staminaHistory, ShiftSeries reputationHistory) {
+        this.version = version;
+        this.player = player != null ? player.snapshot() : null;
+        this.managerName = manager != null ? manager.getName() : null;
+        this.managerAge = manager != null ? manager.getAge() : 0;
+        this.npcs = npcs;
+        this.baseDemandFactor = baseDemandFactor;
+        this.demandHistory = demandHistory;
+        this.earningsHistory = earningsHistory;
+        this.staminaHistory = staminaHistory;
+        this.reputationHistory = reputationHistory;
+        this.takenAt = System.currentTimeMillis();
+    }
+
+    // NPC data for a snapshot; the NPCs never change during a game, so Game builds this once and shares it
+    public static Map<String, GameData.NPCData> npcData(Map<String, NPC> npcs) {
+        Map<String, GameData.NPCData> data = new HashMap<>();
+        if (npcs != null) {
+            for (Map.Entry<String, NPC> entry : npcs.entrySet()) {
+                data.put(entry.getKey(), new GameData.NPCData(entry.getValue()));
+            }
+        }
+        return Collections.unmodifiableMap(data);
+    }
+
+    // A fresh GameData for Save to write; nothing in it is shared with the live game
+    public GameData toGameData() {
+        GameData data = new GameData();
+        data.playerData = player != null ? Player.fromState(player) : null;
+        data.managerName = managerName;
+        data.managerAge = managerAge;
+        data.npcsData.putAll(npcs);
+        data.baseDemandFactor = baseDemandFactor;
+        data.gameTimestamp = takenAt;
+        data.stateVersion = version;
+        data.demandHistory = demandHistory;
+        data.earningsHistory = earningsHistory;
+        data.staminaHistory = staminaHistory;
+        data.reputationHistory = reputationHistory;
+        return data;
+    }
+}
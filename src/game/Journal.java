@@ -0,0 +1,238 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import characters.Player;
+
+// Append-only event journal for the event-sourced save mode. Instead of re-serializing the whole game on
+// every save, each shift, purchase, item use and review is appended as a small record holding the event
+// and the player's resulting state. A background task fsyncs the file every few hundred milliseconds, so
+// one fsync covers every record appended in between (group commit). Every so often Game writes a full
+// snapshot through Save and compacts the journal; loading is the latest snapshot plus a replay of the
+// records after it.
+//
+// Record layout: int bodyLength, int crc32(body), body = long seq, byte type, utf item, double demand,
+// int health, int stamina, double money, int reputation, int shiftsWorked, short n, n x (utf item, int count).
+// Replay stops at the first record that is short or fails its checksum (a torn write from a crash).
+public class Journal {
+    public static final byte SHIFT = 1;
+    public static final byte PURCHASE = 2;
+    public static final byte USE = 3;
+    public static final byte REVIEW = 4;
+
+    private static final long SYNC_INTERVAL_MILLIS = 200;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ScheduledExecutorService syncer;
+    private ByteBuffer buf = ByteBuffer.allocate(512);
+    private long lastSeq = 0;
+    private int eventsSinceSnapshot = 0;
+    private boolean unsynced = false;
+
+    public Journal(File file) throws IOException {
+        this.file = file;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        this.channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "JournalSync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::syncQuietly, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Append an event with the player's state after it. Returns immediately; the record is made durable
+    // by the next group sync.
+    public synchronized long append(byte type, String item, double demandFactor, Player p) throws IOException {
+        long seq = ++lastSeq;
+        byte[] itemBytes = (item == null ? "" : item).getBytes(StandardCharsets.UTF_8);
+        Map<String, Integer> inventory = p.getInventory();
+
+        buf.clear();
+        buf.position(8); // room for length and checksum
+        putBody(seq, type, itemBytes, demandFactor, p, inventory);
+        int end = buf.position();
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 8, end - 8);
+        buf.putInt(0, end - 8);
+        buf.putInt(4, (int) crc.getValue());
+        buf.flip();
+
+        channel.position(channel.size());
+        while (buf.hasRemaining()) channel.write(buf);
+
+        eventsSinceSnapshot++;
+        unsynced = true;
+        return seq;
+    }
+
+    private void putBody(long seq, byte type, byte[] itemBytes, double demandFactor, Player p, Map<String, Integer> inventory) {
+        int needed = 8 + 8 + 1 + 2 + itemBytes.length + 8 + 4 * 4 + 8 + 2;
+        for (String name : inventory.keySet()) needed += 2 + name.getBytes(StandardCharsets.UTF_8).length + 4;
+        if (buf.capacity() < needed) {
+            buf = ByteBuffer.allocate(Math.max(needed, buf.capacity() * 2));
+            buf.position(8);
+        }
+
+        buf.putLong(seq);
+        buf.put(type);
+        putString(itemBytes);
+        buf.putDouble(demandFactor);
+        buf.putInt(p.getHealth());
+        buf.putInt(p.getStamina());
+        buf.putDouble(p.getMoney());
+        buf.putInt(p.getReputation());
+        buf.putInt(p.getShiftsWorked());
+        buf.putShort((short) inventory.size());
+        for (Map.Entry<String, Integer> e : inventory.entrySet()) {
+            putString(e.getKey().getBytes(StandardCharsets.UTF_8));
+            buf.putInt(e.getValue());
+        }
+    }
+
+    private void putString(byte[] bytes) {
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xFFFF];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Apply every record newer than the snapshot to it. snapshot may be null (no save yet), in which case
+    // a new GameData is returned if the journal holds anything.
+    public synchronized GameData replay(GameData snapshot) throws IOException {
+        long since = snapshot != null ? snapshot.journalSeq : 0;
+        GameData data = snapshot;
+        Player replayed = null;
+        String playerName = snapshot != null && snapshot.playerData != null ? snapshot.playerData.getName() : "Charlie Dotter";
+        // Records hold the money after each event, so a shift's earnings are the difference from the one before
+        double money = snapshot != null && snapshot.playerData != null ? snapshot.playerData.getMoney() : new Player(playerName).getMoney();
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        long pos = 0;
+        long size = channel.size();
+        while (pos + 8 <= size) {
+            header.clear();
+            channel.read(header, pos);
+            int len = header.getInt(0);
+            int expectedCrc = header.getInt(4);
+            if (len <= 0 || pos + 8 + len > size) break;
+
+            ByteBuffer body = ByteBuffer.allocate(len);
+            channel.read(body, pos + 8);
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, len);
+            if ((int) crc.getValue() != expectedCrc) break;
+            body.flip();
+
+            long seq = body.getLong();
+            byte type = body.get();
+            getString(body); // item, kept for inspection but not needed to rebuild state
+            double demand = body.getDouble();
+            int health = body.getInt();
+            int stamina = body.getInt();
+            double moneyAfter = body.getDouble();
+            int reputation = body.getInt();
+            int shifts = body.getInt();
+            HashMap<String, Integer> inventory = new HashMap<>();
+            int items = body.getShort();
+            for (int i = 0; i < items; i++) inventory.put(getString(body), body.getInt());
+
+            pos += 8 + len;
+            lastSeq = Math.max(lastSeq, seq);
+            if (seq <= since) continue;
+
+            if (data == null) data = new GameData();
+            if (type == SHIFT) {
+                data.demandHistory = data.demandHistory.append(demand);
+                data.earningsHistory = data.earningsHistory.append(moneyAfter - money);
+                data.staminaHistory = data.staminaHistory.append(stamina);
+                data.reputationHistory = data.reputationHistory.append(reputation);
+            }
+            money = moneyAfter;
+            replayed = Player.fromJson(playerName, health, stamina, moneyAfter, shifts);
+            replayed.setReputation(reputation);
+            for (Map.Entry<String, Integer> e : inventory.entrySet()) replayed.addItem(e.getKey(), e.getValue());
+            data.journalSeq = seq;
+        }
+
+        // Drop a torn tail so new records start on a clean boundary
+        if (pos < size) channel.truncate(pos);
+
+        // Sequence numbers continue past the snapshot even if the journal was compacted
+        lastSeq = Math.max(lastSeq, since);
+        if (replayed != null) data.playerData = replayed;
+        return data;
+    }
+
+    // Called once a snapshot covering everything up to seq is safely written; empties the journal if
+    // nothing newer has been appended since
+    public synchronized void compact(long seq) throws IOException {
+        eventsSinceSnapshot = 0;
+        if (seq < lastSeq) return;
+        channel.truncate(0);
+        channel.force(true);
+        unsynced = false;
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    public synchronized int getEventsSinceSnapshot() {
+        return eventsSinceSnapshot;
+    }
+
+    // fsync outside the lock so appends aren't held up while the disk catches up
+    public void sync() throws IOException {
+        synchronized (this) {
+            if (!unsynced) return;
+            unsynced = false;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            synchronized (this) {
+                unsynced = true;
+            }
+            throw e;
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.out.println("Journal sync error: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        syncer.shutdownNow();
+        try {
+            sync();
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close journal " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package game;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import characters.Player;
+
+// The original pretty-printed JSON save layout. Written field by field with a streaming generator straight
+// into the store's stream. Read with a streaming parser too: the per-shift histories, which are nearly all
+// of a long career's save, go straight from the parser into primitive arrays, and only the small fields
+// around them (player, manager, NPCs) are read as a tree, checking each field is there and has the right
+// type. Anything missing or malformed falls back to the same default as before, and is described in the
+// problems list if the caller passes one (SaveMigrator reports them, loading in the game ignores them).
+//
+// Schema versions: 1 is the original layout with no version field, 2 adds schemaVersion, 3 adds the
+// earnings, stamina and reputation histories.
+public class JsonSaveFormat {
+    public static final int VERSION = 3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    static {
+        // The store owns the stream (it still has to sync and rename the file after the write)
+        MAPPER.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public static void write(GameData data, OutputStream out) throws IOException {
+        try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+
+            // Game state
+            gen.writeNumberField("schemaVersion", VERSION);
+            gen.writeNumberField("gameTimestamp", data.gameTimestamp);
+            gen.writeNumberField("baseDemandFactor", data.baseDemandFactor);
+            if (data.journalSeq > 0) gen.writeNumberField("journalSeq", data.journalSeq);
+
+            // Player
+            Player p = data.playerData;
+            if (p != null) {
+                gen.writeObjectFieldStart("player");
+                gen.writeStringField("name", p.getName());
+                gen.writeNumberField("health", p.getHealth());
+                gen.writeNumberField("stamina", p.getStamina());
+                gen.writeNumberField("money", p.getMoney());
+                gen.writeNumberField("shiftsWorked", p.getShiftsWorked());
+                gen.writeNumberField("reputation", p.getReputation());
+                gen.writeObjectFieldStart("inventory");
+                for (Map.Entry<String, Integer> e : p.getInventory().entrySet()) {
+                    gen.writeNumberField(e.getKey(), e.getValue());
+                }
+                gen.writeEndObject();
+                gen.writeEndObject();
+            }
+
+            // Manager
+            if (data.managerName != null) {
+                gen.writeObjectFieldStart("manager");
+                gen.writeStringField("name", data.managerName);
+                gen.writeNumberField("age", data.managerAge);
+                gen.writeEndObject();
+            }
+
+            // NPCs
+            gen.writeObjectFieldStart("npcs");
+            for (Map.Entry<String, GameData.NPCData> e : data.npcsData.entrySet()) {
+                gen.writeObjectFieldStart(e.getKey());
+                gen.writeStringField("name", e.getValue().name);
+                gen.writeStringField("role", e.getValue().role);
+                gen.writeNumberField("age", e.getValue().age);
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+
+            // Per-shift histories
+            writeSeries(gen, "demandHistory", data.demandHistory);
+            writeSeries(gen, "earningsHistory", data.earningsHistory);
+            writeSeries(gen, "staminaHistory", data.staminaHistory);
+            writeSeries(gen, "reputationHistory", data.reputationHistory);
+
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeSeries(JsonGenerator gen, String field, ShiftSeries series) throws IOException {
+        if (series == null) return;
+        gen.writeArrayFieldStart(field);
+        for (int i = 0; i < series.size(); i++) {
+            gen.writeNumber(series.get(i));
+        }
+        gen.writeEndArray();
+    }
+
+    private static final String[] HISTORIES = { "demandHistory", "earningsHistory", "staminaHistory", "reputationHistory" };
+
+    // problems may be null
+    public static GameData read(InputStream in, List<String> problems) throws IOException {
+        // Everything but the histories goes into a tree of its own; the histories are streamed
+        ObjectNode root = MAPPER.createObjectNode();
+        ShiftSeries[] histories = new ShiftSeries[HISTORIES.length];
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Save is not a JSON object");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                // A repeated field replaces the earlier one, as it would in a tree
+                int h = Arrays.asList(HISTORIES).indexOf(field);
+                if (h >= 0 && value == JsonToken.START_ARRAY) {
+                    histories[h] = readSeries(parser, field, problems);
+                    root.remove(field);
+                } else {
+                    root.set(field, MAPPER.readTree(parser));
+                    if (h >= 0) histories[h] = null;
+                }
+            }
+        }
+
+        GameData data = new GameData();
+        data.schemaVersion = root.path("schemaVersion").asInt(1);
+        if (data.schemaVersion > VERSION) throw new IOException("Save schema version " + data.schemaVersion + " is newer than this game supports");
+
+        data.gameTimestamp = longField(root, "", "gameTimestamp", data.gameTimestamp, problems);
+        data.baseDemandFactor = doubleField(root, "", "baseDemandFactor", 1.0, problems);
+        data.journalSeq = root.path("journalSeq").asLong(0);
+
+        // Player
+        JsonNode playerNode = root.get("player");
+        if (playerNode == null) note(problems, "player missing");
+        else if (!playerNode.isObject()) note(problems, "player is not an object");
+        else data.playerData = readPlayer(playerNode, problems);
+
+        // Manager (regenerated by the game if missing)
+        JsonNode managerNode = root.get("manager");
+        if (managerNode != null) {
+            if (managerNode.isObject() && managerNode.has("name")) {
+                data.managerName = managerNode.path("name").asText();
+                data.managerAge = intField(managerNode, "manager.", "age", 30, problems);
+            } else {
+                note(problems, "manager is not an object with a name, ignoring it");
+            }
+        }
+
+        // NPCs
+        JsonNode npcsNode = root.get("npcs");
+        if (npcsNode != null && !npcsNode.isObject()) {
+            note(problems, "npcs is not an object, ignoring it");
+        } else if (npcsNode != null) {
+            Iterator<Map.Entry<String, JsonNode>> fields = npcsNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> e = fields.next();
+                if (!e.getValue().isObject()) {
+                    note(problems, "npcs." + e.getKey() + " is not an object, skipping it");
+                    continue;
+                }
+                String where = "npcs." + e.getKey() + ".";
+                GameData.NPCData npc = new GameData.NPCData();
+                npc.name = textField(e.getValue(), where, "name", "", problems);
+                npc.role = textField(e.getValue(), where, "role", "", problems);
+                npc.age = intField(e.getValue(), where, "age", 30, problems);
+                data.npcsData.put(e.getKey(), npc);
+            }
+        }
+
+        // Per-shift histories (only demand before version 3)
+        for (int i = 0; i < HISTORIES.length; i++) {
+            if (histories[i] == null && root.has(HISTORIES[i])) note(problems, HISTORIES[i] + " is not an array, ignoring it");
+        }
+        data.demandHistory = histories[0] != null ? histories[0] : ShiftSeries.EMPTY;
+        data.earningsHistory = histories[1] != null ? histories[1] : ShiftSeries.EMPTY;
+        data.staminaHistory = histories[2] != null ? histories[2] : ShiftSeries.EMPTY;
+        data.reputationHistory = histories[3] != null ? histories[3] : ShiftSeries.EMPTY;
+
+        return data;
+    }
+
+    // A history array, read value by value into a primitive array; the parser is on its START_ARRAY
+    private static ShiftSeries readSeries(JsonParser parser, String field, List<String> problems) throws IOException {
+        double[] values = new double[256];
+        int n = 0;
+        JsonToken t;
+        for (int i = 0; (t = parser.nextToken()) != JsonToken.END_ARRAY; i++) {
+            if (t == null) throw new IOException("Save ends inside " + field);
+            if (t == JsonToken.VALUE_NUMBER_INT || t == JsonToken.VALUE_NUMBER_FLOAT) {
+                if (n == values.length) values = Arrays.copyOf(values, n * 2);
+                values[n++] = parser.getDoubleValue();
+            } else {
+                parser.skipChildren();
+                note(problems, field + "[" + i + "] is not a number, skipping it");
+            }
+        }
+        return ShiftSeries.wrap(DoubleBuffer.wrap(n < values.length ? Arrays.copyOf(values, n) : values), null);
+    }
+
+    private static Player readPlayer(JsonNode node, List<String> problems) {
+        String name = textField(node, "player.", "name", "Player", problems);
+        int health = intField(node, "player.", "health", 100, problems);
+        int stamina = intField(node, "player.", "stamina", 100, problems);
+        double money = doubleField(node, "player.", "money", 0.0, problems);
+        int shiftsWorked = intField(node, "player.", "shiftsWorked", 0, problems);
+        int reputation = intField(node, "player.", "reputation", 80, problems);
+
+        // Checked on the raw values, then clamped like Player clamps reputation
+        if (health < 0 || health > 100) note(problems, "player.health " + health + " out of range 0-100");
+        if (stamina < 0 || stamina > 100) note(problems, "player.stamina " + stamina + " out of range 0-100");
+        if (reputation < 0 || reputation > 100) note(problems, "player.reputation " + reputation + " out of range 0-100");
+        health = Math.max(0, Math.min(100, health));
+        stamina = Math.max(0, Math.min(100, stamina));
+
+        Player p = Player.fromJson(name, health, stamina, money, shiftsWorked);
+        p.setReputation(reputation);
+
+        // Inventory
+        JsonNode inventoryNode = node.get("inventory");
+        if (inventoryNode != null && !inventoryNode.isObject()) {
+            note(problems, "player.inventory is not an object, ignoring it");
+        } else if (inventoryNode != null) {
+            Iterator<Map.Entry<String, JsonNode>> items = inventoryNode.fields();
+            while (items.hasNext()) {
+                Map.Entry<String, JsonNode> e = items.next();
+                if (!e.getValue().canConvertToInt()) {
+                    note(problems, "player.inventory." + e.getKey() + " is not a count, skipping it");
+                    continue;
+                }
+                p.addItem(e.getKey(), e.getValue().asInt());
+            }
+        }
+
+        return p;
+    }
+
+    // Just the summary for a save list: parses only as far as the player and skips everything else
+    public static SaveHeader readHeader(InputStream in) throws IOException {
+        long timestamp = 0;
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Save is not a JSON object");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("gameTimestamp")) {
+                    timestamp = parser.getValueAsLong();
+                } else if (field.equals("player") && value == JsonToken.START_OBJECT) {
+                    Player p = readPlayer(MAPPER.readTree(parser), null);
+                    return new SaveHeader(timestamp, p.getName(), p.getMoney(), p.getShiftsWorked(), p.getReputation());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new SaveHeader(timestamp, "", 0, 0, 0);
+    }
+
+    private static String textField(JsonNode node, String where, String field, String def, List<String> problems) {
+        JsonNode v = node.get(field);
+        if (v != null && v.isTextual()) return v.asText();
+        note(problems, where + field + (v == null ? " missing" : " is not text") + ", using \"" + def + "\"");
+        return def;
+    }
+
+    private static int intField(JsonNode node, String where, String field, int def, List<String> problems) {
+        JsonNode v = node.get(field);
+        if (v != null && v.canConvertToInt()) return v.asInt();
+        note(problems, where + field + (v == null ? " missing" : " is not an integer") + ", using " + def);
+        return def;
+    }
+
+    private static long longField(JsonNode node, String where, String field, long def, List<String> problems) {
+        JsonNode v = node.get(field);
+        if (v != null && v.canConvertToLong()) return v.asLong();
+        note(problems, where + field + (v == null ? " missing" : " is not an integer") + ", using " + def);
+        return def;
+    }
+
+    private static double doubleField(JsonNode node, String where, String field, double def, List<String> problems) {
+        JsonNode v = node.get(field);
+        if (v != null && v.isNumber()) return v.asDouble();
+        note(problems, where + field + (v == null ? " missing" : " is not a number") + ", using " + def);
+        return def;
+    }
+
+    private static void note(List<String> problems, String problem) {
+        if (problems != null) problems.add(problem);
+    }
+}
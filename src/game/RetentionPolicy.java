@@ -0,0 +1,58 @@
+package game;
+
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+
+// Which saves to hold on to: the newest keepLast as they are, plus the newest save of each of the last
+// keepDaily days and keepWeekly weeks (UTC, weeks starting Monday) as checkpoints. Days and weeks only
+// count if they have a save, so a week away from the game doesn't use up the daily checkpoints.
+public class RetentionPolicy {
+    public static final RetentionPolicy DEFAULT = new RetentionPolicy(10, 7, 4);
+
+    private final int keepLast;
+    private final int keepDaily;
+    private final int keepWeekly;
+
+    public RetentionPolicy(int keepLast, int keepDaily, int keepWeekly) {
+        if (keepLast < 1) throw new IllegalArgumentException("keepLast must be at least 1 so the latest save is never dropped");
+        this.keepLast = keepLast;
+        this.keepDaily = keepDaily;
+        this.keepWeekly = keepWeekly;
+    }
+
+    // The newest keepLast of the given save times (epoch seconds)
+    public Set<Long> recent(NavigableSet<Long> times) {
+        Set<Long> keep = new HashSet<>();
+        for (Long t : times.descendingSet()) {
+            if (keep.size() >= keepLast) break;
+            keep.add(t);
+        }
+        return keep;
+    }
+
+    // The daily and weekly checkpoints among the given save times (epoch seconds)
+    public Set<Long> checkpoints(NavigableSet<Long> times) {
+        Set<Long> keep = new HashSet<>();
+        long lastDay = Long.MIN_VALUE, lastWeek = Long.MIN_VALUE;
+        int days = 0, weeks = 0;
+        for (Long t : times.descendingSet()) {
+            long day = Math.floorDiv(t, 86400L);
+            long week = Math.floorDiv(day + 3, 7L); // epoch day 0 was a Thursday
+            if (day != lastDay) {
+                lastDay = day;
+                if (days++ < keepDaily) keep.add(t);
+            }
+            if (week != lastWeek) {
+                lastWeek = week;
+                if (weeks++ < keepWeekly) keep.add(t);
+            }
+        }
+        return keep;
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy[last=" + keepLast + ", daily=" + keepDaily + ", weekly=" + keepWeekly + "]";
+    }
+}
@@ -1,256 +1,353 @@
 package game;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import characters.Player;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class Save {
-    private final File saveDir = new File("saves/");
-    private final ObjectMapper mapper = new ObjectMapper();
-    
-    // Autosave thread management
-    private Thread autosaveThread;
-    private volatile boolean autosaveRunning = false;
-    private GameData currentGameData;
+    // How new saves are written; loading detects either format
+    public enum Format { JSON, BINARY }
 
+    private final SaveStore store;
+    private final Format format;
+    
+    // Write-behind saving: writer threads write the saves, and a scheduler thread drives the debounced and
+    // periodic autosaves. Queueing a save never blocks: each Save holds at most one save waiting to be
+    // written, and a newer one replaces it (the newer state includes every change the older one had), so a
+    // slow store only means fewer intermediate saves. One drain task per Save writes them, so a Save's
+    // writes stay in order however many writer threads there are.
+    // version is the newest state change reported through markDirty(); savedVersion is the newest version
+    // that has reached the store, so clean intervals are skipped. A write counts for the version its
+    // GameData was taken at, not whatever version is current when it's queued, so a change made while an
+    // older state is being captured still leaves the save dirty.
+    private static final long DEFAULT_AUTOSAVE_INTERVAL_MILLIS = 5 * 60 * 1000; // 5 minutes
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 3000;
+
+    private final Pipeline pipeline;
+    private final boolean ownsPipeline;
+    private final PrintWriter out; // the game's console, for "Saved game to" and "Loaded game from"
+    private final Queue<String> notices = new ConcurrentLinkedQueue<>(); // finished saves not yet printed
+    private final Object writes = new Object();
+    private PendingWrite pending; // waiting for the writer (guarded by writes)
+    private boolean draining;     // a drain task is queued or running (guarded by writes)
+    private CompletableFuture<Boolean> lastWrite = CompletableFuture.completedFuture(true); // guarded by writes
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong savedVersion = new AtomicLong();
+    private volatile Supplier<GameData> stateSupplier;
+    private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+    private ScheduledFuture<?> autosaveTask;
+    private ScheduledFuture<?> debounceTask;
+
+    // Default: one JSON file per save in saves/
     public Save() {
-        if (!saveDir.exists()) {
-            saveDir.mkdirs();
-        }
-        this.currentGameData = null;
+        this(new FileSaveStore(new File("saves/")));
     }
 
-    // Save GameData to a JSON file with timestamp
-    public boolean saveGame(GameData gameData) {
-        long timestamp = System.currentTimeMillis() / 1000;
-        String filename = "game_" + timestamp + ".save";
-        return saveGame(gameData, filename);
+    public Save(SaveStore store) {
+        this(store, Format.JSON);
     }
 
-   
-    // Save GameData to a JSON file with specified filename
-    public boolean saveGame(GameData gameData, String filename) {
-        try {
-            ObjectNode root = serializeGameData(gameData);
-            File out = new File(saveDir, filename);
-            mapper.writerWithDefaultPrettyPrinter().writeValue(out, root);
-            System.out.println("Saved game to " + out.getPath());
-            return true;
-        } catch (IOException ex) {
-            System.err.println("Failed to save game: " + ex.getMessage());
-            return false;
-        }
+    public Save(SaveStore store, Format format) {
+        this(store, format, new Pipeline(), true, new PrintWriter(System.out, true));
     }
 
-    public GameData loadLatestGame() {
-        File[] files = saveDir.listFiles((d, name) -> name.endsWith(".save"));
-        if (files == null || files.length == 0) {
-            return null;
+    // Saves through threads shared with other saves (see Pipeline), reporting to out (a server session's
+    // connection, say)
+    public Save(SaveStore store, Format format, Pipeline shared, PrintWriter out) {
+        this(store, format, shared, false, out);
+    }
+
+    private Save(SaveStore store, Format format, Pipeline pipeline, boolean ownsPipeline, PrintWriter out) {
+        this.store = store;
+        this.format = format;
+        this.pipeline = pipeline;
+        this.ownsPipeline = ownsPipeline;
+        this.out = out;
+    }
+
+    // The writer and autosave scheduler threads. Every Save normally starts its own; a server shares one
+    // pipeline between all its sessions, so a session's saves cost no threads of their own. Writers are
+    // started as saves come in and stop after a while idle. The queue holds at most one task per open Save
+    // (see saveGame), so it needs no bound.
+    public static class Pipeline {
+        private static final long IDLE_WRITER_SECONDS = 30;
+
+        private final ThreadPoolExecutor writer;
+        private final ScheduledExecutorService scheduler;
+
+        public Pipeline() {
+            this(1);
         }
 
-        // Find newest by lastModified
-        File newest = files[0];
-        for (File f : files) {
-            if (f.lastModified() > newest.lastModified()) newest = f;
+        public Pipeline(int writers) {
+            writers = Math.max(1, writers);
+            this.writer = new ThreadPoolExecutor(writers, writers, IDLE_WRITER_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> daemon(r, "SaveWriter"));
+            this.writer.allowCoreThreadTimeOut(true);
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "AutosaveScheduler"));
         }
 
-        try {
-            ObjectNode root = (ObjectNode) mapper.readTree(newest);
-            GameData gameData = deserializeGameData(root);
-            System.out.println("Loaded game from " + newest.getPath());
-            return gameData;
-        } catch (IOException ex) {
-            System.err.println("Failed to load game: " + ex.getMessage());
-            return null;
+        // Waits for queued saves to finish writing, then stops the threads
+        public void shutdown() {
+            scheduler.shutdownNow();
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                    System.err.println("Timed out waiting for saves to finish writing");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    public boolean hasSaves() {
-        File[] files = saveDir.listFiles((d, name) -> name.endsWith(".save"));
-        return files != null && files.length > 0;
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
     }
 
-    public synchronized void startAutosave(GameData gameData) {
-        stopAutosave();
-        this.currentGameData = gameData;
-        autosaveRunning = true;
-        autosaveThread = new Thread(() -> {
-            while (autosaveRunning) {
-                try {
-                    Thread.sleep(5 * 60 * 1000); // 5 minutes
-                    if (autosaveRunning && currentGameData != null) {
-                        saveGame(currentGameData);
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    System.out.println("Autosave error: " + e.getMessage());
-                }
-            }
-        }, "AutosaveThread");
-        autosaveThread.setDaemon(true);
-        autosaveThread.start();
-        // System.out.println("Autosave started (5-minute interval)");
+    // A save waiting for the writer: what to write, the version it covers, and who's waiting for it
+    private static final class PendingWrite {
+        final GameData gameData;
+        final long version;
+        final CompletableFuture<Boolean> result;
+
+        PendingWrite(GameData gameData, long version, CompletableFuture<Boolean> result) {
+            this.gameData = gameData;
+            this.version = version;
+            this.result = result;
+        }
     }
 
-    public synchronized void stopAutosave() {
-        autosaveRunning = false;
-        if (autosaveThread != null && autosaveThread.isAlive()) {
-            autosaveThread.interrupt();
+    // Queue GameData to be written in the configured format, stamped with the current time. Returns
+    // straight away, without waiting for room; the future completes with whether the write succeeded. It
+    // covers the changes up to gameData.stateVersion, or, for GameData without one, every change reported
+    // so far. If a newer save is queued before this one is written, only the newer one is written, and
+    // this future completes with its result.
+    public CompletableFuture<Boolean> saveGame(GameData gameData) {
+        long v = gameData.stateVersion > 0 ? gameData.stateVersion : version.get();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        boolean startDrain;
+        synchronized (writes) {
+            if (pending != null) result.thenAccept(pending.result::complete);
+            pending = new PendingWrite(gameData, v, result);
+            lastWrite = result;
+            startDrain = !draining;
+            draining = true;
+        }
+        if (startDrain) {
             try {
-                autosaveThread.join(2000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                pipeline.writer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drain(); // closing: write on the caller rather than drop the save
             }
         }
-        autosaveThread = null;
-        // System.out.println("Autosave stopped");
+        return result;
     }
 
-    public synchronized void updateGameData(GameData gameData) {
-        this.currentGameData = gameData;
+    // Writes the pending save, and any queued while it was being written, then returns. Runs on a writer
+    // thread (or the caller while closing); saveGame only starts one at a time per Save.
+    private void drain() {
+        while (true) {
+            PendingWrite next;
+            synchronized (writes) {
+                next = pending;
+                pending = null;
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            next.result.complete(writeNow(next.gameData, next.version));
+        }
     }
 
-    private ObjectNode serializeGameData(GameData data) {
-        ObjectNode root = mapper.createObjectNode();
+    private boolean writeNow(GameData gameData, long v) {
+        try {
+            String location = store.write(System.currentTimeMillis(), os -> writeGameData(gameData, os));
+            savedVersion.accumulateAndGet(v, Math::max);
+            notices.add("Saved game to " + location);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Failed to save game: " + ex.getMessage());
+            return false;
+        }
+    }
 
-        // Game state
-        root.put("gameTimestamp", data.gameTimestamp);
-        root.put("baseDemandFactor", data.baseDemandFactor);
+    // Prints what the writers have saved since the last call. Called by the game on its own thread: a
+    // server session's console is a connection that may be slow to take output, and a writer thread shared
+    // with every other session mustn't wait on it.
+    public void printNotices() {
+        String notice;
+        while ((notice = notices.poll()) != null) out.println(notice);
+    }
 
-        // Player
-        if (data.playerData != null) {
-            root.set("player", serializePlayer(data.playerData));
+    private void writeGameData(GameData gameData, OutputStream out) throws IOException {
+        if (format == Format.BINARY) {
+            BinarySaveFormat.write(gameData, out);
+        } else {
+            JsonSaveFormat.write(gameData, out);
         }
+    }
 
-        // Manager
-        if (data.managerName != null) {
-            ObjectNode managerNode = mapper.createObjectNode();
-            managerNode.put("name", data.managerName);
-            managerNode.put("age", data.managerAge);
-            root.set("manager", managerNode);
+    // Reads either format, told apart by the binary magic at the start of the stream. file is the save's
+    // file when the store has one, letting binary saves map their demand history lazily.
+    private GameData readGameData(InputStream is, FileChannel file) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(is);
+        if (isBinary(in)) {
+            return BinarySaveFormat.read(in, file);
         }
+        return JsonSaveFormat.read(in, null);
+    }
 
-        // NPCs
-        ObjectNode npcsNode = mapper.createObjectNode();
-        for (var entry : data.npcsData.entrySet()) {
-            ObjectNode npcNode = mapper.createObjectNode();
-            npcNode.put("name", entry.getValue().name);
-            npcNode.put("role", entry.getValue().role);
-            npcNode.put("age", entry.getValue().age);
-            npcsNode.set(entry.getKey(), npcNode);
+    private final SaveStore.Reader<GameData> gameDataReader = new SaveStore.Reader<GameData>() {
+        @Override
+        public GameData readFrom(InputStream in) throws IOException {
+            return readGameData(in, null);
         }
-        root.set("npcs", npcsNode);
 
-        // Demand history
-        if (data.demandHistory != null) {
-            var arr = mapper.createArrayNode();
-            for (Double d : data.demandHistory) {
-                arr.add(d);
-            }
-            root.set("demandHistory", arr);
+        @Override
+        public GameData readFrom(InputStream in, FileChannel file) throws IOException {
+            return readGameData(in, file);
         }
+    };
+
+    static boolean isBinary(BufferedInputStream in) throws IOException {
+        byte[] head = new byte[BinarySaveFormat.MAGIC.length];
+        in.mark(head.length);
+        int n = in.readNBytes(head, 0, head.length);
+        in.reset();
+        return BinarySaveFormat.matches(head, n);
+    }
+
+    // Summaries of every save, oldest first, without loading them: binary saves are read only as far as
+    // their fixed header and JSON saves only as far as the player
+    public List<SaveHeader> listSaves() {
+        return store.list(this::readHeader);
+    }
 
-        return root;
+    private SaveHeader readHeader(InputStream is) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(is, 512);
+        return isBinary(in) ? BinarySaveFormat.readHeader(in) : JsonSaveFormat.readHeader(in);
     }
 
-    /**
-     * Serialize Player to JSON ObjectNode
-     */
-    private ObjectNode serializePlayer(Player p) {
-        ObjectNode playerNode = mapper.createObjectNode();
-        playerNode.put("name", p.getName());
-        playerNode.put("health", p.getHealth());
-        playerNode.put("stamina", p.getStamina());
-        playerNode.put("money", p.getMoney());
-        playerNode.put("shiftsWorked", p.getShiftsWorked());
-        playerNode.put("reputation", p.getReputation());
-
-        // Inventory
-        ObjectNode inventoryNode = mapper.createObjectNode();
-        for (var entry : p.getInventory().entrySet()) {
-            inventoryNode.put(entry.getKey(), entry.getValue());
+    public GameData loadLatestGame() {
+        try {
+            GameData gameData = store.readLatest(gameDataReader);
+            if (gameData != null) out.println("Loaded game from " + store);
+            return gameData;
+        } catch (IOException ex) {
+            System.err.println("Failed to load game: " + ex.getMessage());
+            return null;
         }
-        playerNode.set("inventory", inventoryNode);
+    }
 
-        return playerNode;
+    public boolean hasSaves() {
+        return store.hasSaves();
     }
 
-    /**
-     * Deserialize JSON ObjectNode to GameData
-     */
-    private GameData deserializeGameData(ObjectNode root) {
-        GameData gameData = new GameData();
+    // Report a change to the game state. Changes arriving within the debounce window of each other are
+    // coalesced into one autosave once things go quiet.
+    public void markDirty() {
+        version.incrementAndGet();
+        debounceAutosave();
+    }
 
-        gameData.gameTimestamp = root.path("gameTimestamp").asLong(System.currentTimeMillis());
-        gameData.baseDemandFactor = root.path("baseDemandFactor").asDouble(1.0);
+    // Report the change that made stateVersion, for callers that number their states themselves and stamp
+    // the GameData they save with the same numbers
+    public void markDirty(long stateVersion) {
+        version.accumulateAndGet(stateVersion, Math::max);
+        debounceAutosave();
+    }
 
-        // Player
-        ObjectNode playerNode = (ObjectNode) root.path("player");
-        if (playerNode != null) {
-            gameData.playerData = deserializePlayer(playerNode);
+    private void debounceAutosave() {
+        if (stateSupplier == null) return;
+        synchronized (this) {
+            if (debounceTask != null) debounceTask.cancel(false);
+            try {
+                debounceTask = pipeline.scheduler.schedule(this::autosaveIfDirty, debounceMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                debounceTask = null; // closed
+            }
         }
+    }
 
-        // Manager
-        ObjectNode managerNode = (ObjectNode) root.path("manager");
-        if (managerNode != null && managerNode.has("name")) {
-            gameData.managerName = managerNode.path("name").asText();
-            gameData.managerAge = managerNode.path("age").asInt(30);
-        }
+    public boolean isDirty() {
+        return savedVersion.get() < version.get();
+    }
 
-        // NPCs
-        ObjectNode npcsNode = (ObjectNode) root.path("npcs");
-        if (npcsNode != null) {
-            npcsNode.fieldNames().forEachRemaining(key -> {
-                ObjectNode npcNode = (ObjectNode) npcsNode.path(key);
-                GameData.NPCData npcData = new GameData.NPCData();
-                npcData.name = npcNode.path("name").asText();
-                npcData.role = npcNode.path("role").asText();
-                npcData.age = npcNode.path("age").asInt(30);
-                gameData.npcsData.put(key, npcData);
-            });
-        }
+    // Autosave whatever the supplier returns: debounced after changes, and every 5 minutes as a backstop
+    // if changes never go quiet. Intervals with nothing new to write are skipped.
+    public void startAutosave(Supplier<GameData> stateSupplier) {
+        startAutosave(stateSupplier, DEFAULT_AUTOSAVE_INTERVAL_MILLIS, DEFAULT_DEBOUNCE_MILLIS);
+    }
 
-        // Demand history
-        if (root.has("demandHistory") && root.path("demandHistory").isArray()) {
-            var arr = root.withArray("demandHistory");
-            gameData.demandHistory = new java.util.ArrayList<>();
-            for (int i = 0; i < arr.size(); i++) {
-                gameData.demandHistory.add(arr.get(i).asDouble(0.0));
-            }
-        }
+    public synchronized void startAutosave(Supplier<GameData> stateSupplier, long intervalMillis, long debounceMillis) {
+        stopAutosave();
+        this.stateSupplier = stateSupplier;
+        this.debounceMillis = debounceMillis;
+        autosaveTask = pipeline.scheduler.scheduleWithFixedDelay(this::autosaveIfDirty, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
 
-        return gameData;
+    public synchronized void stopAutosave() {
+        if (autosaveTask != null) autosaveTask.cancel(false);
+        if (debounceTask != null) debounceTask.cancel(false);
+        autosaveTask = null;
+        debounceTask = null;
+        stateSupplier = null;
     }
 
-    /**
-     * Deserialize JSON ObjectNode to Player
-     */
-    private Player deserializePlayer(ObjectNode root) {
-        String name = root.path("name").asText("Player");
-        int health = root.path("health").asInt(100);
-        int stamina = root.path("stamina").asInt(100);
-        double money = root.path("money").asDouble(0.0);
-        int shiftsWorked = root.path("shiftsWorked").asInt(0);
-
-        Player p = Player.fromJson(name, health, stamina, money, shiftsWorked);
-
-        // Reputation
-        int reputation = root.path("reputation").asInt(80);
-        p.setReputation(reputation);
-
-        // Inventory
-        ObjectNode inventoryNode = (ObjectNode) root.path("inventory");
-        if (inventoryNode != null) {
-            inventoryNode.fieldNames().forEachRemaining(key -> {
-                int count = inventoryNode.path(key).asInt(0);
-                p.addItem(key, count);
-            });
+    private void autosaveIfDirty() {
+        Supplier<GameData> supplier = stateSupplier;
+        if (supplier == null || !isDirty()) return;
+        try {
+            saveGame(supplier.get());
+        } catch (RuntimeException e) {
+            System.out.println("Autosave error: " + e.getMessage());
         }
+    }
 
-        return p;
+    // Stops autosaving, waits for queued saves to finish writing, then closes the store. A shared
+    // pipeline keeps running for the other saves; only this save's writes are waited for.
+    public void close() {
+        stopAutosave();
+        if (ownsPipeline) {
+            pipeline.shutdown();
+        } else {
+            CompletableFuture<Boolean> last;
+            synchronized (writes) {
+                last = lastWrite;
+            }
+            try {
+                last.get(30, TimeUnit.SECONDS); // a Save's writes are in order, so earlier ones are done too
+            } catch (TimeoutException e) {
+                System.err.println("Timed out waiting for saves to finish writing");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // writeNow reports its own failures
+            }
+        }
+        store.close();
     }
 }
@@ -0,0 +1,177 @@
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+import characters.Manager;
+import characters.NPC;
+import characters.Player;
+import util.Benchmark;
+
+// Compares the JSON and binary save formats on synthetic saves with long histories:
+//
+//   java -cp <classpath> game.SaveFormatBenchmark [--shifts=n,n,...] [--runs=n] [--seed=n]
+//
+// Each save has a player, a manager, a few NPCs and the given number of shifts in each of its four
+// histories. For both formats it reports the encoded size, the time to write it (to a stream that throws the
+// bytes away) and to read it back from memory, and the heap allocated per read. Binary saves are also read
+// from a file with its channel, the way FileSaveStore loads them, so the histories are mapped instead of
+// read. Every save is read back and compared with the original before anything is timed. The default sizes
+// run from 10^3 to 10^6 shifts; 10^7 works too, but its JSON encoding is close to a gigabyte, so it needs
+// a large heap (-Xmx4g).
+public class SaveFormatBenchmark {
+    // Discards what's written, so writes are timed without copying into a buffer
+    private static final OutputStream NOWHERE = new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    };
+
+    static GameData syntheticSave(int shifts, SplittableRandom rng) {
+        HashMap<String, NPC> npcs = new HashMap<>();
+        npcs.put("Cashier", new NPC("Dana", "Cashier", 31));
+        npcs.put("Stocker", new NPC("Luis", "Stocker", 24));
+        npcs.put("Butcher", new NPC("Greta", "Butcher", 52));
+
+        double[] demand = new double[shifts], earnings = new double[shifts], stamina = new double[shifts], reputation = new double[shifts];
+        for (int i = 0; i < shifts; i++) {
+            demand[i] = 0.5 + rng.nextDouble();
+            earnings[i] = Math.round(rng.nextDouble() * 20000) / 100.0;
+            stamina[i] = rng.nextInt(101);
+            reputation[i] = rng.nextInt(101);
+        }
+
+        Player player = new Player("Charlie Dotter");
+        GameData data = new GameData(player, new Manager("Boss", 40), npcs, 1.0, ShiftSeries.of(demand));
+        data.earningsHistory = ShiftSeries.of(earnings);
+        data.staminaHistory = ShiftSeries.of(stamina);
+        data.reputationHistory = ShiftSeries.of(reputation);
+        return data;
+    }
+
+    static byte[] encode(GameData data, Save.Format format) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        write(data, format, buf);
+        return buf.toByteArray();
+    }
+
+    private static void write(GameData data, Save.Format format, OutputStream out) throws IOException {
+        if (format == Save.Format.BINARY) BinarySaveFormat.write(data, out);
+        else JsonSaveFormat.write(data, out);
+    }
+
+    private static GameData decode(byte[] save, Save.Format format) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(save);
+        return format == Save.Format.BINARY ? BinarySaveFormat.read(in) : JsonSaveFormat.read(in, null);
+    }
+
+    private static GameData readMapped(Path file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file.toFile())) {
+            return BinarySaveFormat.read(new BufferedInputStream(in), in.getChannel());
+        }
+    }
+
+    // Null if the copy matches the original, otherwise what differs
+    static String compare(GameData original, GameData copy) {
+        if (copy.playerData == null || !copy.playerData.getName().equals(original.playerData.getName())
+                || copy.playerData.getMoney() != original.playerData.getMoney()) {
+            return "player differs";
+        }
+        if (!original.managerName.equals(copy.managerName) || copy.npcsData.size() != original.npcsData.size()) return "staff differ";
+        String[] names = { "demandHistory", "earningsHistory", "staminaHistory", "reputationHistory" };
+        ShiftSeries[] a = { original.demandHistory, original.earningsHistory, original.staminaHistory, original.reputationHistory };
+        ShiftSeries[] b = { copy.demandHistory, copy.earningsHistory, copy.staminaHistory, copy.reputationHistory };
+        for (int h = 0; h < a.length; h++) {
+            if (a[h].size() != b[h].size()) return names[h] + " has " + b[h].size() + " shifts, not " + a[h].size();
+            for (int i = 0; i < a[h].size(); i++) {
+                if (a[h].get(i) != b[h].get(i)) return names[h] + "[" + i + "] differs";
+            }
+        }
+        return null;
+    }
+
+    // Something for Benchmark to fold in. It doesn't touch the values, so a mapped read is timed as loading
+    // does it, without paging the histories in.
+    private static long totalShifts(GameData data) {
+        return data.demandHistory.size() + data.earningsHistory.size() + data.staminaHistory.size() + data.reputationHistory.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        GameOptions options = new GameOptions(args);
+        int runs = Math.max(2, options.getInt("runs", 4));
+        SplittableRandom rng = new SplittableRandom(options.getLong("seed", 1));
+        Path file = Files.createTempFile("save-benchmark", ".save");
+        file.toFile().deleteOnExit();
+
+        System.out.println(String.format("%9s  %9s  %9s  %9s  %9s  |  %9s  %9s  %9s  %9s  %9s", "Shifts",
+            "JSON", "write", "read", "allocated", "Binary", "write", "read", "allocated", "mapped"));
+        for (String s : options.get("shifts", "1000,10000,100000,1000000").split(",")) {
+            int shifts;
+            try {
+                shifts = Math.max(1, Integer.parseInt(s.trim()));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid --shifts entry '" + s + "', skipping it.");
+                continue;
+            }
+            GameData data = syntheticSave(shifts, rng);
+            byte[] json = encode(data, Save.Format.JSON);
+            byte[] binary = encode(data, Save.Format.BINARY);
+            Files.write(file, binary);
+            for (String mismatch : new String[] { compare(data, decode(json, Save.Format.JSON)),
+                    compare(data, decode(binary, Save.Format.BINARY)), compare(data, readMapped(file)) }) {
+                if (mismatch != null) {
+                    System.out.println(shifts + " shifts: a save read back differs, " + mismatch);
+                    System.exit(2);
+                }
+            }
+
+            // About 50 MB of each format per batch, but at least one save
+            int jsonIterations = Math.max(1, 50_000_000 / json.length);
+            int binaryIterations = Math.max(1, 50_000_000 / binary.length);
+            Benchmark.Result jsonWrite = Benchmark.measure(runs, jsonIterations, () -> timedWrite(data, Save.Format.JSON));
+            Benchmark.Result jsonRead = Benchmark.measure(runs, jsonIterations, () -> timedRead(json, Save.Format.JSON));
+            Benchmark.Result binaryWrite = Benchmark.measure(runs, binaryIterations, () -> timedWrite(data, Save.Format.BINARY));
+            Benchmark.Result binaryRead = Benchmark.measure(runs, binaryIterations, () -> timedRead(binary, Save.Format.BINARY));
+            Benchmark.Result mapped = Benchmark.measure(runs, binaryIterations, () -> {
+                try {
+                    return totalShifts(readMapped(file));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            System.out.println(String.format("%9d  %9s  %9s  %9s  %9s  |  %9s  %9s  %9s  %9s  %9s", shifts,
+                Benchmark.bytes(json.length), Benchmark.nanos(jsonWrite.meanNanos), Benchmark.nanos(jsonRead.meanNanos), Benchmark.bytes(jsonRead.bytes),
+                Benchmark.bytes(binary.length), Benchmark.nanos(binaryWrite.meanNanos), Benchmark.nanos(binaryRead.meanNanos), Benchmark.bytes(binaryRead.bytes),
+                Benchmark.nanos(mapped.meanNanos)));
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private static long timedWrite(GameData data, Save.Format format) {
+        try {
+            write(data, format, NOWHERE);
+            return 1;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long timedRead(byte[] save, Save.Format format) {
+        try {
+            return totalShifts(decode(save, format));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package game;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// Summary of a save, enough to show it in a list without loading the rest: binary saves keep these fields
+// in a fixed-size block at the front of the file (see BinarySaveFormat), JSON saves are parsed only as
+// far as the player.
+public class SaveHeader {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    public final long timestamp; // millis
+    public final String playerName;
+    public final double money;
+    public final int shiftsWorked;
+    public final int reputation;
+
+    public SaveHeader(long timestamp, String playerName, double money, int shiftsWorked, int reputation) {
+        this.timestamp = timestamp;
+        this.playerName = playerName;
+        this.money = money;
+        this.shiftsWorked = shiftsWorked;
+        this.reputation = reputation;
+    }
+
+    @Override
+    public String toString() {
+        return FORMAT.format(Instant.ofEpochMilli(timestamp)) + "  " + playerName
+            + "  $" + String.format("%.2f", money) + "  shifts: " + shiftsWorked + "  rep: " + reputation;
+    }
+}
@@ -0,0 +1,367 @@
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import characters.Player;
+
+// Checks and upgrades every save under a directory (archives included), in parallel:
+//
+//   java -cp <classpath> game.SaveMigrator --dir=saves [--format=json|binary] [--repair] [--dry-run]
+//                                          [--threads=n] [--report=<file>] [--import-into=<db>]
+//
+// Each save is read, validated, and rewritten in place if it's an older schema version or not in
+// --format, through a temp file and an atomic rename like FileSaveStore. Saves with problems (missing or
+// malformed fields, values out of range) are reported and left alone, unless --repair rewrites them with
+// the defaults the game would have used. The file list is split across a ForkJoinPool and the per-file
+// results are merged back into one report.
+//
+// --import-into copies the saves into a SQLite save database (for switching to --saves=sqlite) instead of
+// rewriting them: the files are left alone, and every save the game could load goes into the database in
+// --format, stamped with its save time. A game server's saves keep their slots: a save under
+// players/<slot>/ goes into that slot (what GameServer reads with --saves=sqlite), anything else into the
+// unnamed slot a single game uses. The files are checked and encoded in parallel a batch at a time, and
+// each batch is written with one transaction per slot in it.
+public class SaveMigrator {
+    private static final int FILES_PER_TASK = 16;
+    private static final int IMPORT_BATCH = 256;
+
+    private final Save.Format target; // null keeps each save's own format
+    private final boolean repair;
+    private final boolean dryRun;
+    private final SqliteSaveStore importInto; // null rewrites saves in place
+    // Where slotOf() looks for players/<slot>/: the parent of --dir, so --dir=saves/players works too
+    private Path slotsUnder;
+
+    public SaveMigrator(Save.Format target, boolean repair, boolean dryRun) {
+        this(target, repair, dryRun, null);
+    }
+
+    public SaveMigrator(Save.Format target, boolean repair, boolean dryRun, SqliteSaveStore importInto) {
+        this.target = target;
+        this.repair = repair;
+        this.dryRun = dryRun;
+        this.importInto = importInto;
+    }
+
+    // Counts plus one line per save that was invalid, repaired or unreadable
+    public static class Report {
+        public int scanned, upToDate, migrated, repaired, invalid, failed;
+        public int imported, importFailed;
+        public final List<String> details = new ArrayList<>();
+        final List<PendingImport> pending = new ArrayList<>(); // encoded, waiting for their batch
+
+        void merge(Report other) {
+            scanned += other.scanned;
+            upToDate += other.upToDate;
+            migrated += other.migrated;
+            repaired += other.repaired;
+            invalid += other.invalid;
+            failed += other.failed;
+            imported += other.imported;
+            importFailed += other.importFailed;
+            details.addAll(other.details);
+            pending.addAll(other.pending);
+        }
+
+        @Override
+        public String toString() {
+            return "scanned " + scanned + ": " + upToDate + " up to date, " + migrated + " migrated, "
+                + repaired + " repaired, " + invalid + " invalid (left as is), " + failed + " unreadable";
+        }
+    }
+
+    private static class PendingImport {
+        final String slot;
+        final long timestamp;
+        final byte[] data;
+
+        PendingImport(String slot, long timestamp, byte[] data) {
+            this.slot = slot;
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+    }
+
+    private class MigrateTask extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> files;
+
+        MigrateTask(List<Path> files) {
+            this.files = files;
+        }
+
+        @Override
+        protected Report compute() {
+            if (files.size() <= FILES_PER_TASK) {
+                Report report = new Report();
+                for (Path file : files) migrate(file, report);
+                return report;
+            }
+            int mid = files.size() / 2;
+            MigrateTask left = new MigrateTask(files.subList(0, mid));
+            left.fork();
+            Report report = new MigrateTask(files.subList(mid, files.size())).compute();
+            report.merge(left.join());
+            return report;
+        }
+    }
+
+    public Report run(Path dir, ForkJoinPool pool) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.endsWith(".save") || name.endsWith(".save.gz");
+            }).sorted().collect(Collectors.toList());
+        }
+        if (importInto == null) return pool.invoke(new MigrateTask(files));
+
+        slotsUnder = dir.toAbsolutePath().normalize();
+        if (slotsUnder.getParent() != null) slotsUnder = slotsUnder.getParent();
+        Report report = new Report();
+        for (int from = 0; from < files.size(); from += IMPORT_BATCH) {
+            Report batch = pool.invoke(new MigrateTask(files.subList(from, Math.min(files.size(), from + IMPORT_BATCH))));
+            importBatch(batch);
+            report.merge(batch);
+        }
+        return report;
+    }
+
+    // The server slot a save belongs to, from a players/<slot>/ directory above it below --dir; the unnamed
+    // slot for any other save
+    private String slotOf(Path file) {
+        Path rel = slotsUnder.relativize(file.toAbsolutePath().normalize());
+        for (int i = 0; i + 2 < rel.getNameCount(); i++) {
+            if (rel.getName(i).toString().equals("players")) return rel.getName(i + 1).toString();
+        }
+        return "";
+    }
+
+    // Each slot's saves in the batch go in with one transaction; a slot whose write fails doesn't keep the
+    // others out
+    private void importBatch(Report batch) {
+        Map<String, List<PendingImport>> bySlot = new LinkedHashMap<>();
+        for (PendingImport p : batch.pending) bySlot.computeIfAbsent(p.slot, k -> new ArrayList<>()).add(p);
+        batch.pending.clear();
+
+        for (Map.Entry<String, List<PendingImport>> entry : bySlot.entrySet()) {
+            List<PendingImport> pending = entry.getValue();
+            int n = pending.size();
+            long[] timestamps = new long[n];
+            byte[][] saves = new byte[n][];
+            for (int i = 0; i < n; i++) {
+                timestamps[i] = pending.get(i).timestamp;
+                saves[i] = pending.get(i).data;
+            }
+            SqliteSaveStore store = importInto.slot(entry.getKey());
+            try {
+                store.writeBatch(timestamps, saves);
+                batch.imported += n;
+            } catch (IOException e) {
+                batch.importFailed += n;
+                batch.details.add("failed to import a batch of " + n + " saves into " + store + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void migrate(Path file, Report report) {
+        report.scanned++;
+        boolean gzipped = file.getFileName().toString().endsWith(".gz");
+        List<String> problems = new ArrayList<>();
+
+        GameData data;
+        Save.Format format;
+        try (InputStream in = open(file, gzipped)) {
+            if (Save.isBinary((BufferedInputStream) in)) {
+                format = Save.Format.BINARY;
+                data = BinarySaveFormat.read(in);
+            } else {
+                format = Save.Format.JSON;
+                data = JsonSaveFormat.read(in, problems);
+            }
+        } catch (IOException | RuntimeException e) {
+            report.failed++;
+            report.details.add(file + ": unreadable: " + e.getMessage());
+            return;
+        }
+        validate(data, problems);
+
+        int latest = format == Save.Format.BINARY ? BinarySaveFormat.VERSION : JsonSaveFormat.VERSION;
+        Save.Format outFormat = target != null ? target : format;
+        boolean outdated = data.schemaVersion < latest || outFormat != format;
+
+        // Nothing to repair a save with no player from; the game can't load one
+        if (!problems.isEmpty() && (!repair || data.playerData == null)) {
+            report.invalid++;
+            report.details.add(file + ": " + String.join("; ", problems));
+            return;
+        }
+        boolean upToDate = problems.isEmpty() && !outdated;
+
+        try {
+            if (importInto != null) {
+                // Saved at the time in its name, like FileSaveStore would load it
+                long timestamp = FileSaveStore.timeOf(file.toFile(), gzipped ? ".save.gz" : ".save") * 1000;
+                if (!dryRun) report.pending.add(new PendingImport(slotOf(file), timestamp, encode(data, outFormat)));
+            } else if (!upToDate && !dryRun) {
+                rewrite(file, data, outFormat, gzipped);
+            }
+        } catch (IOException e) {
+            report.failed++;
+            report.details.add(file + ": failed to " + (importInto != null ? "encode" : "rewrite") + ": " + e.getMessage());
+            return;
+        }
+        if (upToDate) {
+            report.upToDate++;
+        } else if (problems.isEmpty()) {
+            report.migrated++;
+        } else {
+            report.repaired++;
+            report.details.add(file + ": repaired: " + String.join("; ", problems));
+        }
+    }
+
+    // Checks that hold for either format, on top of what JsonSaveFormat notes while parsing
+    static void validate(GameData data, List<String> problems) {
+        Player p = data.playerData;
+        if (p == null) {
+            if (!problems.contains("player missing")) problems.add("player missing");
+        } else {
+            if (p.getName() == null || p.getName().isEmpty()) problems.add("player.name empty");
+            if (!Double.isFinite(p.getMoney()) || p.getMoney() < 0) problems.add("player.money " + p.getMoney() + " is not a valid amount");
+            if (p.getShiftsWorked() < 0) problems.add("player.shiftsWorked " + p.getShiftsWorked() + " is negative");
+            for (var item : p.getInventory().entrySet()) {
+                if (item.getValue() <= 0) problems.add("player.inventory." + item.getKey() + " count " + item.getValue() + " is not positive");
+            }
+        }
+        if (!Double.isFinite(data.baseDemandFactor) || data.baseDemandFactor <= 0) problems.add("baseDemandFactor " + data.baseDemandFactor + " is not positive");
+        for (int i = 0; i < data.demandHistory.size(); i++) {
+            double d = data.demandHistory.get(i);
+            if (!Double.isFinite(d) || d < 0) {
+                problems.add("demandHistory[" + i + "] " + d + " is not a valid demand factor");
+                break;
+            }
+        }
+        checkRange(data.earningsHistory, "earningsHistory", 0, Double.MAX_VALUE, problems);
+        checkRange(data.staminaHistory, "staminaHistory", 0, 100, problems);
+        checkRange(data.reputationHistory, "reputationHistory", 0, 100, problems);
+    }
+
+    // Reports the first value outside [min, max], if any
+    private static void checkRange(ShiftSeries series, String field, double min, double max, List<String> problems) {
+        for (int i = 0; i < series.size(); i++) {
+            double v = series.get(i);
+            if (!(v >= min && v <= max)) {
+                problems.add(field + "[" + i + "] " + v + " is out of range");
+                return;
+            }
+        }
+    }
+
+    private static InputStream open(Path file, boolean gzipped) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (gzipped) in = new GZIPInputStream(in, 8192);
+        return new BufferedInputStream(in);
+    }
+
+    private static byte[] encode(GameData data, Save.Format format) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        if (format == Save.Format.BINARY) BinarySaveFormat.write(data, buf);
+        else JsonSaveFormat.write(data, buf);
+        return buf.toByteArray();
+    }
+
+    // Through FileSaveStore's temp file and rename, keeping the file name and modification time
+    private static void rewrite(Path file, GameData data, Save.Format format, boolean gzipped) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        FileSaveStore.writeAtomically(file.toFile(), gzipped, out -> {
+            if (format == Save.Format.BINARY) BinarySaveFormat.write(data, out);
+            else JsonSaveFormat.write(data, out);
+        });
+        Files.setLastModifiedTime(file, modified);
+    }
+
+    public static void main(String[] args) {
+        GameOptions options = new GameOptions(args);
+        Path dir = Paths.get(options.get("dir", "saves"));
+        if (!Files.isDirectory(dir)) {
+            System.out.println("No such directory: " + dir);
+            System.exit(1);
+        }
+
+        Save.Format target = null;
+        if (options.has("format")) {
+            try {
+                target = Save.Format.valueOf(options.get("format", "json").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown --format '" + options.get("format", "") + "', keeping each save's format.");
+            }
+        }
+        SqliteSaveStore importInto = null;
+        if (options.has("import-into")) {
+            try {
+                importInto = new SqliteSaveStore(new File(options.get("import-into", "saves/saves.db")));
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+        SaveMigrator migrator = new SaveMigrator(target, options.getFlag("repair"), options.getFlag("dry-run"), importInto);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, options.getInt("threads", Runtime.getRuntime().availableProcessors())));
+
+        long start = System.nanoTime();
+        Report report;
+        try {
+            report = migrator.run(dir, pool);
+        } catch (IOException e) {
+            System.out.println("Failed to scan " + dir + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        } finally {
+            pool.shutdown();
+            if (importInto != null) importInto.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println((migrator.dryRun ? "[dry run] " : "") + report);
+        if (importInto != null && !migrator.dryRun) {
+            System.out.println("Imported " + report.imported + " saves into " + importInto
+                + (report.importFailed > 0 ? " (" + report.importFailed + " failed)" : ""));
+        }
+        System.out.println(String.format("%.2f s, %.0f saves/s on %d threads", seconds, report.scanned / Math.max(seconds, 1e-9), pool.getParallelism()));
+
+        if (options.has("report")) {
+            Path out = Paths.get(options.get("report", "migration-report.txt"));
+            try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(out))) {
+                w.println(report);
+                report.details.forEach(w::println);
+                System.out.println("Details written to " + out);
+            } catch (IOException e) {
+                System.out.println("Failed to write report: " + e.getMessage());
+            }
+        } else {
+            report.details.stream().limit(20).forEach(System.out::println);
+            if (report.details.size() > 20) System.out.println("... " + (report.details.size() - 20) + " more (use --report=<file>)");
+        }
+        if (report.failed > 0 || report.invalid > 0 || report.importFailed > 0) System.exit(2);
+    }
+}
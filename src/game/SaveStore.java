@@ -0,0 +1,41 @@
+package game;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+// Where serialized saves live. Save decides what goes in a save; a store only decides where the bytes go
+// and how to find the newest one again.
+public interface SaveStore {
+    @FunctionalInterface
+    interface Writer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Reader<T> {
+        T readFrom(InputStream in) throws IOException;
+
+        // Stores that keep a save as a plain file call this instead, so a format can map large sections
+        // of it lazily rather than reading them up front. Mappings stay valid after the channel is closed.
+        default T readFrom(InputStream in, FileChannel file) throws IOException {
+            return readFrom(in);
+        }
+    }
+
+    // Store a new save taken at the given time (millis). Returns a description of where it went.
+    String write(long timestamp, Writer writer) throws IOException;
+
+    // Read the newest save, or return null if there are none
+    <T> T readLatest(Reader<T> reader) throws IOException;
+
+    boolean hasSaves();
+
+    // Run reader over every save, oldest first. Readers only need to consume as much as they want, so
+    // listing by header touches a few bytes per save. Saves that fail to read are skipped.
+    <T> List<T> list(Reader<T> reader);
+
+    default void close() {}
+}
@@ -0,0 +1,119 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Min/max/sum pyramid over a ShiftSeries, so the aggregate of any range of shifts costs O(log n) however
+// long the career is. Level 1 summarizes each complete block of FANOUT values, level 2 each block of FANOUT
+// level-1 entries, and so on; a range query reads the odd values at either end from the level below and
+// the whole blocks in between from the level above. Raw values aren't copied, they're read from the series.
+//
+// The series only ever grows, so update() just folds in the values appended since the last call. Not
+// thread-safe; CareerAnalytics serializes access.
+final class SeriesPyramid {
+    static final int FANOUT = 16;
+
+    // Aggregates of complete blocks at one level
+    private static final class Level {
+        double[] min = new double[16];
+        double[] max = new double[16];
+        double[] sum = new double[16];
+        int size;
+
+        void add(double lo, double hi, double total) {
+            if (size == min.length) {
+                min = Arrays.copyOf(min, size * 2);
+                max = Arrays.copyOf(max, size * 2);
+                sum = Arrays.copyOf(sum, size * 2);
+            }
+            min[size] = lo;
+            max[size] = hi;
+            sum[size] = total;
+            size++;
+        }
+    }
+
+    private ShiftSeries series = ShiftSeries.EMPTY;
+    private final List<Level> levels = new ArrayList<>(); // levels.get(k) is level k + 1
+
+    // Catch up with a newer version of the series; anything that isn't an extension starts over
+    void update(ShiftSeries next) {
+        if (next == series) return;
+        if (!next.startsWith(series)) {
+            series = ShiftSeries.EMPTY;
+            levels.clear();
+        }
+        for (int i = series.size(); i < next.size(); i++) {
+            if ((i + 1) % FANOUT == 0) addBlock(next, i + 1 - FANOUT);
+        }
+        series = next;
+    }
+
+    // Summarize the FANOUT raw values from start, then carry complete blocks upwards
+    private void addBlock(ShiftSeries values, int start) {
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY, total = 0;
+        for (int i = start; i < start + FANOUT; i++) {
+            double v = values.get(i);
+            lo = Math.min(lo, v);
+            hi = Math.max(hi, v);
+            total += v;
+        }
+        for (int k = 0; ; k++) {
+            if (k == levels.size()) levels.add(new Level());
+            Level level = levels.get(k);
+            level.add(lo, hi, total);
+            if (level.size % FANOUT != 0) return;
+
+            lo = Double.POSITIVE_INFINITY;
+            hi = Double.NEGATIVE_INFINITY;
+            total = 0;
+            for (int i = level.size - FANOUT; i < level.size; i++) {
+                lo = Math.min(lo, level.min[i]);
+                hi = Math.max(hi, level.max[i]);
+                total += level.sum[i];
+            }
+        }
+    }
+
+    int size() { return series.size(); }
+
+    // Aggregate of values [from, to) as { min, max, sum }; from and to must be within the series
+    double[] query(int from, int to) {
+        double[] acc = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0 };
+        int lo = from, hi = to;
+        for (int k = 0; lo < hi; k++) {
+            // Whole blocks of the next level up lie between these two
+            int blockLo = (lo + FANOUT - 1) / FANOUT * FANOUT;
+            int blockHi = hi / FANOUT * FANOUT;
+            if (k == levels.size() || blockLo >= blockHi) {
+                accumulate(acc, k, lo, hi);
+                break;
+            }
+            accumulate(acc, k, lo, blockLo);
+            accumulate(acc, k, blockHi, hi);
+            lo = blockLo / FANOUT;
+            hi = blockHi / FANOUT;
+        }
+        return acc;
+    }
+
+    // Fold entries [from, to) of level k (0 being the raw values) into acc
+    private void accumulate(double[] acc, int k, int from, int to) {
+        if (k == 0) {
+            for (int i = from; i < to; i++) {
+                double v = series.get(i);
+                acc[0] = Math.min(acc[0], v);
+                acc[1] = Math.max(acc[1], v);
+                acc[2] += v;
+            }
+            return;
+        }
+        Level level = levels.get(k - 1);
+        for (int i = from; i < to; i++) {
+            acc[0] = Math.min(acc[0], level.min[i]);
+            acc[1] = Math.max(acc[1], level.max[i]);
+            acc[2] += level.sum[i];
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.function.Supplier;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import namegenerator.NameAPIResponse;
+import weather.OpenMeteoResponse;
+import weather.WeatherSource;
+
+// Record and replay of a game session. Everything a session depends on from outside passes through here:
+// the commands typed, the forecasts and names the APIs return, the random coordinates weather is moved to,
+// and the saved state it starts from. Playing live, each call just goes through. Recording (--record=<file>)
+// also appends what came back to a log; replaying returns the logged values in the same order instead, so
+// the session plays out exactly as it did without a console, the network or the saves directory (see
+// SessionReplay).
+//
+// Layout: the magic and an int version, then a deflate stream of: varint n, n x string (the game's
+// arguments), then one record per call, a tag byte and its payload. Numbers use the save format's varints
+// and strings, forecast hours are delta-encoded, and the initial state is a binary save. The stream is
+// flushed before waiting for input, so a session that is killed keeps everything up to its last command.
+// A replay that asks for something other than the next record has diverged from the recording (the code
+// changed, or the log belongs to different options) and fails with an IllegalStateException.
+public class SessionLog implements Closeable {
+    public static final byte[] MAGIC = { 'S', 'U', 'P', 'L' };
+    public static final int VERSION = 1;
+
+    // Record tags
+    private static final byte INPUT = 1;
+    private static final byte END_OF_INPUT = 2;
+    private static final byte RANDOM = 3;
+    private static final byte WEATHER = 4;
+    private static final byte NO_WEATHER = 5;
+    private static final byte WEATHER_FAILED = 6;
+    private static final byte NAME = 7;
+    private static final byte NO_NAME = 8;
+    private static final byte STATE = 9;
+    private static final byte NO_STATE = 10;
+    private static final String[] TAG_NAMES = { "end of log", "input", "end of input", "random number", "weather",
+        "no weather", "weather failure", "name", "no name", "saved state", "no saved state" };
+
+    @FunctionalInterface
+    public interface Fetch<T> {
+        T fetch() throws Exception;
+    }
+
+    // Live play: nothing is recorded
+    public static final SessionLog LIVE = new SessionLog(null, null, new String[0]);
+
+    private DataOutputStream out; // while recording
+    private final DataInputStream in; // while replaying
+    private final String[] args;
+    private long records = 0;
+    private String divergence;
+
+    private SessionLog(DataOutputStream out, DataInputStream in, String[] args) {
+        this.out = out;
+        this.in = in;
+        this.args = args;
+    }
+
+    // Start recording a session played with the given arguments
+    public static SessionLog record(File file, String[] args) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        OutputStream os = new FileOutputStream(file);
+        try {
+            DataOutputStream head = new DataOutputStream(os);
+            head.write(MAGIC);
+            head.writeInt(VERSION);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(os, true)));
+            BinarySaveFormat.writeVarInt(out, args.length);
+            for (String arg : args) BinarySaveFormat.writeString(out, arg);
+            out.flush();
+            return new SessionLog(out, null, args.clone());
+        } catch (IOException e) {
+            os.close();
+            throw e;
+        }
+    }
+
+    // Open a recorded session for replay
+    public static SessionLog replay(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        try {
+            DataInputStream head = new DataInputStream(is);
+            byte[] magic = new byte[MAGIC.length];
+            head.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a session log: " + file);
+            int version = head.readInt();
+            if (version > VERSION) throw new IOException("Session log " + file + " is version " + version + ", newer than this game (" + VERSION + ")");
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(is)));
+            String[] args = new String[BinarySaveFormat.readVarInt(in)];
+            for (int i = 0; i < args.length; i++) args[i] = BinarySaveFormat.readString(in);
+            return new SessionLog(null, in, args);
+        } catch (IOException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    public boolean isRecording() { return out != null; }
+    public boolean isReplaying() { return in != null; }
+
+    // Arguments the session was recorded with
+    public String[] getArgs() { return args.clone(); }
+
+    // Records written or read so far
+    public long getRecords() { return records; }
+
+    // Why the replay stopped matching the log, or null if it hasn't
+    public String getDivergence() { return divergence; }
+
+    // Next command line. At the end of the input (or of a replayed log) this throws NoSuchElementException,
+    // like Scanner does.
+    public String readLine(Scanner scanner) {
+        if (isReplaying()) {
+            byte tag = next();
+            if (tag == INPUT) return readString();
+            if (tag == END_OF_INPUT || tag < 0) throw new NoSuchElementException("End of session log");
+            throw diverged("input", tag);
+        }
+        if (!isRecording()) return scanner.nextLine();
+
+        flush(); // the player may take a while, or never come back
+        String line;
+        try {
+            line = scanner.nextLine();
+        } catch (NoSuchElementException e) {
+            try {
+                writeTag(END_OF_INPUT);
+            } catch (IOException io) {
+                stopRecording(io);
+            }
+            close();
+            throw e;
+        }
+        try {
+            writeTag(INPUT);
+            BinarySaveFormat.writeString(out, line);
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+        return line;
+    }
+
+    // Math.random(), or the logged draw
+    public double random() {
+        if (isReplaying()) {
+            byte tag = next();
+            if (tag != RANDOM) throw diverged("random number", tag);
+            try {
+                return in.readDouble();
+            } catch (IOException e) {
+                throw truncated(e);
+            }
+        }
+        double value = Math.random();
+        if (isRecording()) {
+            try {
+                writeTag(RANDOM);
+                out.writeDouble(value);
+            } catch (IOException e) {
+                stopRecording(e);
+            }
+        }
+        return value;
+    }
+
+    // A forecast (or null) from wherever fetch gets it. A failed fetch is logged too, and replays as an
+    // Exception with the same message.
+    public OpenMeteoResponse weather(Fetch<OpenMeteoResponse> fetch) throws Exception {
+        if (isReplaying()) {
+            byte tag = next();
+            if (tag == WEATHER) return readResponse();
+            if (tag == NO_WEATHER) return null;
+            if (tag == WEATHER_FAILED) throw new Exception(readNullable());
+            throw diverged("weather", tag);
+        }
+
+        OpenMeteoResponse response;
+        try {
+            response = fetch.fetch();
+        } catch (Exception e) {
+            if (isRecording()) {
+                try {
+                    writeTag(WEATHER_FAILED);
+                    writeNullable(e.getMessage());
+                } catch (IOException io) {
+                    stopRecording(io);
+                }
+            }
+            throw e;
+        }
+        recordWeather(response);
+        return response;
+    }
+
+    // Log a forecast the game got without going through weather(), such as the one Weather fetches when
+    // it's created; a replay reads it back through replayedWeather()
+    public void recordWeather(OpenMeteoResponse response) {
+        if (!isRecording()) return;
+        try {
+            if (response == null) {
+                writeTag(NO_WEATHER);
+            } else {
+                writeTag(WEATHER);
+                writeResponse(response);
+            }
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+    }
+
+    // Weather source for a replay: every fetch is the next logged forecast, wherever it's for
+    public WeatherSource replayedWeather() {
+        if (!isReplaying()) throw new IllegalStateException("Not replaying");
+        return (lat, lon) -> weather(null);
+    }
+
+    // A name from the generator (or null if it had none)
+    public NameAPIResponse.NameData name(Supplier<NameAPIResponse.NameData> take) {
+        if (isReplaying()) {
+            byte tag = next();
+            if (tag == NO_NAME) return null;
+            if (tag != NAME) throw diverged("name", tag);
+            try {
+                return new NameAPIResponse.NameData(readNullable(), readNullable(), readNullable(),
+                    BinarySaveFormat.readVarInt(in), readNullable(), readNullable(), readNullable());
+            } catch (IOException e) {
+                throw truncated(e);
+            }
+        }
+
+        NameAPIResponse.NameData name = take.get();
+        if (isRecording()) {
+            try {
+                if (name == null) {
+                    writeTag(NO_NAME);
+                } else {
+                    writeTag(NAME);
+                    writeNullable(name.title);
+                    writeNullable(name.first_name);
+                    writeNullable(name.last_name);
+                    BinarySaveFormat.writeVarInt(out, name.age);
+                    writeNullable(name.dob);
+                    writeNullable(name.gender);
+                    writeNullable(name.nat);
+                }
+            } catch (IOException e) {
+                stopRecording(e);
+            }
+        }
+        return name;
+    }
+
+    // The saved state the session starts from (or null for a new game), logged as a binary save
+    public GameData state(Supplier<GameData> load) {
+        if (isReplaying()) {
+            byte tag = next();
+            if (tag == NO_STATE) return null;
+            if (tag != STATE) throw diverged("saved state", tag);
+            try {
+                byte[] bytes = new byte[BinarySaveFormat.readVarInt(in)];
+                in.readFully(bytes);
+                return BinarySaveFormat.read(new ByteArrayInputStream(bytes));
+            } catch (IOException e) {
+                throw truncated(e);
+            }
+        }
+
+        GameData gameData = load.get();
+        if (isRecording()) {
+            try {
+                if (gameData == null) {
+                    writeTag(NO_STATE);
+                } else {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    BinarySaveFormat.write(gameData, bytes);
+                    writeTag(STATE);
+                    BinarySaveFormat.writeVarInt(out, bytes.size());
+                    bytes.writeTo(out);
+                }
+            } catch (IOException e) {
+                stopRecording(e);
+            }
+        }
+        return gameData;
+    }
+
+    // Hours as varint deltas (one byte each for an hourly series), then the two value columns
+    private void writeResponse(OpenMeteoResponse r) throws IOException {
+        int n = r.size();
+        BinarySaveFormat.writeVarInt(out, n);
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            BinarySaveFormat.writeVarLong(out, r.getEpochHour(i) - previous);
+            previous = r.getEpochHour(i);
+        }
+        for (int i = 0; i < n; i++) out.writeDouble(r.getTemperature(i));
+        for (int i = 0; i < n; i++) out.writeDouble(r.getPressure(i));
+    }
+
+    private OpenMeteoResponse readResponse() {
+        try {
+            int n = BinarySaveFormat.readVarInt(in);
+            if (n < 0) throw new IOException("Malformed forecast length");
+            long[] hours = new long[n];
+            double[] temps = new double[n];
+            double[] pressures = new double[n];
+            long previous = 0;
+            for (int i = 0; i < n; i++) previous = hours[i] = previous + BinarySaveFormat.readVarLong(in);
+            for (int i = 0; i < n; i++) temps[i] = in.readDouble();
+            for (int i = 0; i < n; i++) pressures[i] = in.readDouble();
+            return new OpenMeteoResponse(hours, temps, pressures);
+        } catch (IOException e) {
+            throw truncated(e);
+        }
+    }
+
+    // Strings that may be null: a presence byte, then the string
+    private void writeNullable(String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) BinarySaveFormat.writeString(out, s);
+    }
+
+    private String readNullable() {
+        try {
+            return in.readBoolean() ? BinarySaveFormat.readString(in) : null;
+        } catch (IOException e) {
+            throw truncated(e);
+        }
+    }
+
+    private String readString() {
+        try {
+            return BinarySaveFormat.readString(in);
+        } catch (IOException e) {
+            throw truncated(e);
+        }
+    }
+
+    private void writeTag(byte tag) throws IOException {
+        out.writeByte(tag);
+        records++;
+    }
+
+    // Tag of the next record, or -1 at the end of the log (including a log cut short by a crash)
+    private byte next() {
+        if (divergence != null) throw new IllegalStateException(divergence);
+        int tag;
+        try {
+            tag = in.read();
+        } catch (EOFException e) {
+            tag = -1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read session log", e);
+        }
+        if (tag >= 0) records++;
+        return (byte) tag;
+    }
+
+    private IllegalStateException diverged(String expected, byte tag) {
+        String found = tag >= 0 && tag < TAG_NAMES.length ? TAG_NAMES[tag] : "unknown record " + tag;
+        divergence = "Session diverged from its log at record " + records + ": expected " + expected + ", found " + found;
+        return new IllegalStateException(divergence);
+    }
+
+    private IllegalStateException truncated(IOException e) {
+        divergence = "Session log is truncated or corrupt at record " + records + ": " + e.getMessage();
+        return new IllegalStateException(divergence, e);
+    }
+
+    // A recording that can't be written shouldn't stop the game; it just stops recording
+    private void stopRecording(IOException e) {
+        if (out == null) return;
+        System.out.println("Failed to write session log: " + e.getMessage() + ". No longer recording.");
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+
+    private void flush() {
+        if (out == null) return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+    }
+
+    // Where a replayed game saves: nowhere, so replays leave the saves directory alone and the saves
+    // command always lists the same (nothing)
+    static final class DiscardSaveStore implements SaveStore {
+        @Override
+        public String write(long timestamp, Writer writer) throws IOException {
+            writer.writeTo(OutputStream.nullOutputStream());
+            return "nowhere (replay)";
+        }
+
+        @Override
+        public <T> T readLatest(Reader<T> reader) { return null; }
+
+        @Override
+        public boolean hasSaves() { return false; }
+
+        @Override
+        public <T> List<T> list(Reader<T> reader) { return Collections.emptyList(); }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (out != null) out.close();
+            if (in != null) in.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close session log: " + e.getMessage());
+        }
+        out = null;
+    }
+}
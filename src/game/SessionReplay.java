@@ -0,0 +1,150 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+// Plays a session recorded with --record back through Game, as fast as it will go:
+//
+//   java -cp <classpath> game.SessionReplay --log=<file> [--runs=n] [--expect=<crc32>] [--show]
+//
+// The game's output is checksummed rather than printed (--show prints the first run's), so a replay is a
+// regression test: the same log must give the same checksum every time, and --expect fails the run if it
+// doesn't match one noted earlier. With --runs=n the session is replayed n times in one JVM, the first as a
+// warm-up, and the timings make a benchmark of the whole game loop. Replays never touch the network, the
+// saves directory or the journal; see SessionLog.
+public class SessionReplay {
+    // Counts and checksums everything the game prints
+    private static class Checksum extends OutputStream {
+        private final CRC32 crc = new CRC32();
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            crc.update(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            crc.update(b, off, len);
+            bytes += len;
+        }
+    }
+
+    public static class Result {
+        public final long checksum;
+        public final long bytes;
+        public final long records;
+        public final boolean quit; // false if the log ran out of input first
+        public final double seconds;
+
+        Result(long checksum, long bytes, long records, boolean quit, double seconds) {
+            this.checksum = checksum;
+            this.bytes = bytes;
+            this.records = records;
+            this.quit = quit;
+            this.seconds = seconds;
+        }
+    }
+
+    // Replay the log once with the game's output going to out (checksummed either way). Throws
+    // IllegalStateException if the session diverges from its log.
+    public static Result replay(File file, OutputStream out) throws IOException {
+        Checksum checksum = new Checksum();
+        OutputStream tee = out == null ? checksum : new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                checksum.write(b);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                checksum.write(b, off, len);
+                out.write(b, off, len);
+            }
+        };
+
+        PrintStream console = System.out;
+        boolean quit = true;
+        long start = System.nanoTime();
+        try (SessionLog log = SessionLog.replay(file); PrintStream game = new PrintStream(tee, false)) {
+            System.setOut(game);
+            try {
+                new Game(log.getArgs(), log);
+            } catch (NoSuchElementException e) {
+                quit = false; // the recording ended without quitting (e.g. input ran out)
+            }
+            if (log.getDivergence() != null) throw new IllegalStateException(log.getDivergence());
+            game.flush();
+            return new Result(checksum.crc.getValue(), checksum.bytes, log.getRecords(), quit, (System.nanoTime() - start) / 1e9);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    public static void main(String[] args) {
+        GameOptions options = new GameOptions(args);
+        if (!options.has("log")) {
+            System.out.println("Usage: game.SessionReplay --log=<file> [--runs=n] [--expect=<crc32>] [--show]");
+            System.exit(1);
+        }
+        File file = new File(options.get("log", ""));
+        int runs = Math.max(1, options.getInt("runs", 1));
+
+        Result first = null;
+        double total = 0, best = Double.POSITIVE_INFINITY;
+        for (int run = 0; run < runs; run++) {
+            Result result;
+            try {
+                result = replay(file, run == 0 && options.getFlag("show") ? System.out : null);
+            } catch (IOException e) {
+                System.out.println("Failed to read " + file + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            } catch (IllegalStateException e) {
+                System.out.println("Replay " + (run + 1) + " failed: " + e.getMessage());
+                System.exit(2);
+                return;
+            }
+
+            if (first == null) {
+                first = result;
+            } else if (result.checksum != first.checksum || result.bytes != first.bytes) {
+                System.out.println(String.format("Replay %d printed something else: crc32 %08x (%d bytes), first replay %08x (%d bytes)",
+                    run + 1, result.checksum, result.bytes, first.checksum, first.bytes));
+                System.exit(2);
+            }
+            // The first run warms up the JVM, so it only counts when it's the only one
+            if (run > 0 || runs == 1) {
+                total += result.seconds;
+                best = Math.min(best, result.seconds);
+            }
+        }
+
+        int timed = runs == 1 ? 1 : runs - 1;
+        System.out.println(String.format("Replayed %s: %d records, output crc32 %08x (%d bytes)%s", file, first.records,
+            first.checksum, first.bytes, first.quit ? "" : ", ended without quitting"));
+        System.out.println(String.format("%d runs, %.3f ms per replay (best %.3f ms)", runs, 1000 * total / timed, 1000 * best));
+
+        if (options.has("expect")) {
+            long expected;
+            try {
+                expected = Long.parseLong(options.get("expect", ""), 16);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid --expect, should be the crc32 in hex");
+                System.exit(1);
+                return;
+            }
+            if (expected != first.checksum) {
+                System.out.println(String.format("Output doesn't match: expected crc32 %08x", expected));
+                System.exit(2);
+            }
+            System.out.println("Output matches.");
+        }
+    }
+}
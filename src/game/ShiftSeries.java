@@ -0,0 +1,407 @@
+package game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+
+// Append-only history of one value per shift (the demand factor, earnings, stamina or reputation), kept as
+// primitive doubles in fixed-size chunks.
+// append() returns a new series and leaves the old one as it was, yet shares all of its chunks: values
+// are only ever written past the end of every older series, so a snapshot of the history is just a
+// reference and can be read from any thread. A series can also start from a read-only DoubleBuffer, e.g.
+// mapped from a save, with appends going into chunks after it.
+//
+// Running statistics ride along and are updated in O(1) per append: count, mean and variance (Welford),
+// an exponentially weighted moving average, min/max, and P² estimates of the 10th, 50th and 90th
+// percentiles (Jain & Chlamtac), so trends can be queried without rescanning the history. They're kept
+// once per line of history, in its storage, and updated in place, so an append allocates nothing but a
+// new chunk every CHUNK_SIZE values. The newest series reads them from there; an older one pins a copy
+// when first asked, or recomputes it from its values once the history has moved past it.
+public final class ShiftSeries {
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    public static final double EWMA_ALPHA = 0.2;
+    public static final double[] QUANTILES = { 0.1, 0.5, 0.9 };
+
+    public static final ShiftSeries EMPTY = new ShiftSeries(new Storage(null, new Stats()), 0, Stats.EMPTY);
+
+    // Values shared by every series appended from the same line of history
+    private static final class Storage {
+        final DoubleBuffer base;      // read-only prefix, may be null
+        final int baseSize;
+        volatile double[][] chunks;
+        int length;                   // values written so far, base included (guarded by this)
+        final Stats stats;            // of the first length values, updated in place (guarded by this)
+
+        Storage(DoubleBuffer base, Stats stats) {
+            this.base = base;
+            this.baseSize = base != null ? base.limit() : 0;
+            this.chunks = new double[4][];
+            this.length = baseSize;
+            this.stats = stats;
+        }
+    }
+
+    private final Storage storage;
+    private final int size;
+    private volatile Stats pinned;    // this series' own copy of the stats, once one was needed
+
+    private ShiftSeries(Storage storage, int size, Stats pinned) {
+        this.storage = storage;
+        this.size = size;
+        this.pinned = pinned;
+    }
+
+    // A series starting with the values in base (not copied). stats may be null, in which case they're
+    // computed with one pass over base.
+    public static ShiftSeries wrap(DoubleBuffer base, Stats stats) {
+        if (stats == null || stats.count != base.limit()) stats = Stats.of(base);
+        return new ShiftSeries(new Storage(base, stats.copy()), base.limit(), stats);
+    }
+
+    public static ShiftSeries of(double... values) {
+        return wrap(DoubleBuffer.wrap(values.clone()), null);
+    }
+
+    public ShiftSeries append(double value) {
+        Storage s = storage;
+        synchronized (s) {
+            if (s.length != size) {
+                // Something was already appended to this history past us; branch off a copy
+                s = branch();
+            }
+            int i = size - s.baseSize;
+            int chunk = i >>> CHUNK_BITS;
+            double[][] chunks = s.chunks;
+            if (chunk >= chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            if (chunks[chunk] == null) chunks[chunk] = new double[CHUNK_SIZE];
+            chunks[chunk][i & CHUNK_MASK] = value;
+            s.chunks = chunks;
+            s.length = size + 1;
+            s.stats.add(value);
+        }
+        return new ShiftSeries(s, size + 1, null);
+    }
+
+    // New storage holding this series' values and a copy of its stats: full chunks are shared (nothing
+    // writes to them again), the partly filled last one is copied. Called with storage's lock held.
+    private Storage branch() {
+        Stats stats = pinned;
+        if (stats == null) stats = Stats.of(this);
+        Storage s = new Storage(storage.base, stats.copy());
+        int n = size - storage.baseSize;
+        int full = n >>> CHUNK_BITS;
+        double[][] chunks = new double[Math.max(4, full + 1)][];
+        System.arraycopy(storage.chunks, 0, chunks, 0, full);
+        if ((n & CHUNK_MASK) != 0) chunks[full] = Arrays.copyOf(storage.chunks[full], CHUNK_SIZE);
+        s.chunks = chunks;
+        s.length = size;
+        return s;
+    }
+
+    public double get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        Storage s = storage;
+        if (index < s.baseSize) return s.base.get(index);
+        int i = index - s.baseSize;
+        return s.chunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    // True if this series is prefix followed by zero or more appends. Only answered from the storage the
+    // two share, so a branched copy of the same values counts as unrelated.
+    boolean startsWith(ShiftSeries prefix) {
+        return prefix.size == 0 || (prefix.storage == storage && prefix.size <= size);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public double last() { return get(size - 1); }
+
+    public double[] toArray() {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) values[i] = get(i);
+        return values;
+    }
+
+    // This series' stats, which stay as they are however much is appended after it
+    public Stats getStats() {
+        Stats stats = pinned;
+        if (stats != null) return stats;
+        synchronized (storage) {
+            if (storage.length == size) stats = storage.stats.copy();
+        }
+        // Already appended past: replay our own values rather than keeping a copy for every series
+        if (stats == null) stats = Stats.of(this);
+        pinned = stats;
+        return stats;
+    }
+
+    // One statistic, read straight from the storage while this is still the newest series there, so
+    // checking on a growing history doesn't copy its stats every time
+    private double stat(ToDoubleFunction<Stats> f) {
+        Stats stats = pinned;
+        if (stats == null) {
+            synchronized (storage) {
+                if (storage.length == size) return f.applyAsDouble(storage.stats);
+            }
+            stats = getStats();
+        }
+        return f.applyAsDouble(stats);
+    }
+
+    public double getMean() { return stat(Stats::getMean); }
+    public double getVariance() { return stat(Stats::getVariance); }
+    public double getStdDev() { return stat(Stats::getStdDev); }
+    public double getEwma() { return stat(Stats::getEwma); }
+    public double getMin() { return stat(st -> st.min); }
+    public double getMax() { return stat(st -> st.max); }
+    public double getMedian() { return stat(st -> st.getQuantile(1)); }
+
+    // Recent demand relative to the career average: positive when recent shifts have been busier
+    public double getTrend() {
+        return size == 0 ? 0 : stat(st -> st.ewma - st.mean);
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0) return "no shifts yet";
+        Stats stats = getStats();
+        return String.format("%d shifts, mean %.2f ± %.2f, recent (EWMA) %.2f, range %.2f-%.2f, median %.2f (p10 %.2f, p90 %.2f)",
+            size, stats.mean, stats.getStdDev(), stats.ewma, stats.min, stats.max,
+            stats.getQuantile(1), stats.getQuantile(0), stats.getQuantile(2));
+    }
+
+    // Running statistics. add() updates them in place, which only a storage does to its own; every Stats
+    // handed out of this class is a copy nothing changes afterwards.
+    public static final class Stats {
+        static final Stats EMPTY = new Stats();
+
+        long count;
+        double mean;
+        double m2;
+        double ewma;
+        double min;
+        double max;
+        final P2Quantile[] quantiles; // one per QUANTILES entry
+
+        Stats() {
+            this(0, 0, 0, Double.NaN, Double.NaN, Double.NaN, emptySketches());
+        }
+
+        private Stats(long count, double mean, double m2, double ewma, double min, double max, P2Quantile[] quantiles) {
+            this.count = count;
+            this.mean = mean;
+            this.m2 = m2;
+            this.ewma = ewma;
+            this.min = min;
+            this.max = max;
+            this.quantiles = quantiles;
+        }
+
+        private static P2Quantile[] emptySketches() {
+            P2Quantile[] sketches = new P2Quantile[QUANTILES.length];
+            for (int i = 0; i < sketches.length; i++) sketches[i] = new P2Quantile(QUANTILES[i]);
+            return sketches;
+        }
+
+        void add(double x) {
+            boolean first = count == 0;
+            count++;
+            double delta = x - mean;
+            mean = mean + delta / count;
+            m2 = m2 + delta * (x - mean);
+            ewma = first ? x : ewma + EWMA_ALPHA * (x - ewma);
+            min = first ? x : Math.min(min, x);
+            max = first ? x : Math.max(max, x);
+            for (P2Quantile q : quantiles) q.add(x);
+        }
+
+        Stats copy() {
+            P2Quantile[] sketches = new P2Quantile[quantiles.length];
+            for (int i = 0; i < sketches.length; i++) sketches[i] = quantiles[i].copy();
+            return new Stats(count, mean, m2, ewma, min, max, sketches);
+        }
+
+        static Stats of(DoubleBuffer values) {
+            Stats stats = new Stats();
+            for (int i = 0, size = values.limit(); i < size; i++) stats.add(values.get(i));
+            return stats;
+        }
+
+        static Stats of(ShiftSeries values) {
+            Stats stats = new Stats();
+            for (int i = 0; i < values.size; i++) stats.add(values.get(i));
+            return stats;
+        }
+
+        public long getCount() { return count; }
+        public double getMean() { return count == 0 ? Double.NaN : mean; }
+        public double getVariance() { return count < 2 ? 0 : m2 / (count - 1); }
+        public double getStdDev() { return Math.sqrt(getVariance()); }
+        public double getEwma() { return ewma; }
+
+        // Estimate for QUANTILES[i]
+        public double getQuantile(int i) { return quantiles[i].estimate(); }
+
+        // Saved alongside the history so loading doesn't have to replay it
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(count);
+            out.writeDouble(mean);
+            out.writeDouble(m2);
+            out.writeDouble(ewma);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeByte(quantiles.length);
+            for (P2Quantile q : quantiles) q.write(out);
+        }
+
+        static Stats read(DataInputStream in) throws IOException {
+            long count = in.readLong();
+            double mean = in.readDouble();
+            double m2 = in.readDouble();
+            double ewma = in.readDouble();
+            double min = in.readDouble();
+            double max = in.readDouble();
+            int n = in.readUnsignedByte();
+            if (n != QUANTILES.length) throw new IOException("Unexpected quantile count " + n);
+            P2Quantile[] sketches = new P2Quantile[n];
+            for (int i = 0; i < n; i++) sketches[i] = P2Quantile.read(QUANTILES[i], count, in);
+            return new Stats(count, mean, m2, ewma, min, max, sketches);
+        }
+    }
+
+    // P² streaming quantile estimate: five markers whose heights track the min, p/2, p, (1+p)/2 quantiles
+    // and the max, nudged by piecewise-parabolic interpolation as values arrive. P² is rough on a handful
+    // of values, so the first EXACT values are kept sorted and the quantile is exact until the markers are
+    // seeded from them. Updated in place like Stats.
+    static final class P2Quantile {
+        static final int EXACT = 32;
+
+        final double p;
+        long count;
+        double[] q;         // the sorted values while count < EXACT, then the five marker heights
+        int[] n;            // marker positions, 1-based (null while count < EXACT)
+
+        P2Quantile(double p) {
+            this(p, 0, new double[EXACT], null);
+        }
+
+        private P2Quantile(double p, long count, double[] q, int[] n) {
+            this.p = p;
+            this.count = count;
+            this.q = q;
+            this.n = n;
+        }
+
+        void add(double x) {
+            if (count < EXACT) {
+                int i = (int) count;
+                while (i > 0 && q[i - 1] > x) {
+                    q[i] = q[i - 1];
+                    i--;
+                }
+                q[i] = x;
+                if (++count == EXACT) seed();
+                return;
+            }
+            step(++count, x);
+        }
+
+        P2Quantile copy() {
+            return new P2Quantile(p, count, q.clone(), n != null ? n.clone() : null);
+        }
+
+        // Moves the markers for x, the total-th value
+        private void step(long total, double x) {
+            int k;
+            if (x < q[0]) {
+                q[0] = x;
+                k = 0;
+            } else if (x >= q[4]) {
+                q[4] = x;
+                k = 3;
+            } else {
+                k = 0;
+                while (x >= q[k + 1]) k++;
+            }
+            for (int i = k + 1; i < 5; i++) n[i]++;
+
+            for (int i = 1; i <= 3; i++) {
+                double d = desired(i, total) - n[i];
+                if ((d >= 1 && n[i + 1] - n[i] > 1) || (d <= -1 && n[i - 1] - n[i] < -1)) {
+                    int s = d > 0 ? 1 : -1;
+                    double candidate = parabolic(q, n, i, s);
+                    q[i] = (q[i - 1] < candidate && candidate < q[i + 1]) ? candidate : linear(q, n, i, s);
+                    n[i] += s;
+                }
+            }
+        }
+
+        // Place the markers at their desired positions among the first EXACT values
+        private void seed() {
+            int[] n = new int[5];
+            double[] q = new double[5];
+            for (int i = 0; i < 5; i++) {
+                n[i] = (int) Math.round(i == 0 ? 1 : i == 4 ? EXACT : desired(i, EXACT));
+                if (i > 0) n[i] = Math.max(n[i], n[i - 1] + 1);
+            }
+            for (int i = 3; i >= 0; i--) n[i] = Math.min(n[i], n[i + 1] - 1);
+            for (int i = 0; i < 5; i++) q[i] = this.q[n[i] - 1];
+            this.q = q;
+            this.n = n;
+        }
+
+        // Where middle marker i (1-3) should be after total values
+        private double desired(int i, long total) {
+            double fraction = i == 1 ? p / 2 : i == 2 ? p : (1 + p) / 2;
+            return 1 + (total - 1) * fraction;
+        }
+
+        private static double parabolic(double[] q, int[] n, int i, int s) {
+            return q[i] + (double) s / (n[i + 1] - n[i - 1])
+                * ((n[i] - n[i - 1] + s) * (q[i + 1] - q[i]) / (n[i + 1] - n[i])
+                 + (n[i + 1] - n[i] - s) * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+        }
+
+        private static double linear(double[] q, int[] n, int i, int s) {
+            return q[i] + s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+        }
+
+        double estimate() {
+            if (count == 0) return Double.NaN;
+            if (count >= EXACT) return q[2];
+            // Exact, interpolating between the two nearest ranks
+            double pos = p * (count - 1);
+            int lo = (int) pos;
+            return lo + 1 < count ? q[lo] + (pos - lo) * (q[lo + 1] - q[lo]) : q[lo];
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            if (count < EXACT) {
+                for (int i = 0; i < count; i++) out.writeDouble(q[i]);
+                return;
+            }
+            for (double h : q) out.writeDouble(h);
+            for (int pos : n) out.writeInt(pos);
+        }
+
+        static P2Quantile read(double p, long count, DataInputStream in) throws IOException {
+            if (count < 0) throw new IOException("Malformed quantile sketch");
+            if (count < EXACT) {
+                double[] sorted = new double[EXACT];
+                for (int i = 0; i < count; i++) sorted[i] = in.readDouble();
+                return new P2Quantile(p, count, sorted, null);
+            }
+            double[] q = new double[5];
+            int[] n = new int[5];
+            for (int i = 0; i < 5; i++) q[i] = in.readDouble();
+            for (int i = 0; i < 5; i++) n[i] = in.readInt();
+            return new P2Quantile(p, count, q, n);
+        }
+    }
+}
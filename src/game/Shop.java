@@ -21,6 +21,20 @@ public class Shop {
         // Add more items here as they are created as Item subclasses
     }
 
+    // Same items, with prices overridden by --price-<item>=<price> (spaces in the name become dashes,
+    // e.g. --price-energy-drink=4) for balance testing
+    public Shop(GameOptions options) {
+        this();
+        for (Item item : inventory.values()) {
+            item.setPrice(options.getDouble("price-" + item.getName().replace(' ', '-'), item.getPrice()));
+        }
+    }
+
+    public double getPrice(String item) {
+        Item shopItem = inventory.get(item.trim().toLowerCase());
+        return shopItem != null ? shopItem.getPrice() : Double.NaN;
+    }
+
     public Map<String, Double> getPriceList() {
         // Returns a map of item names to prices for display/compatibility
         Map<String, Double> prices = new HashMap<>();
@@ -34,6 +48,12 @@ public class Shop {
         return inventory.keySet().toArray(new String[0]);
     }
 
+    // Uses one of the player's item, if they have one
+    public boolean use(Player p, String item) {
+        Item shopItem = inventory.get(item.trim().toLowerCase());
+        return shopItem != null && shopItem.use(p);
+    }
+
     public boolean buy(Player p, String item) {
         Item shopItem = inventory.get(item.trim().toLowerCase());
 
@@ -0,0 +1,311 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Saves kept as rows in a SQLite database (sqlite-jdbc is already a dependency). (slot, created_at) is
+// indexed, so finding the newest save is one index lookup no matter how many autosaves have piled up,
+// instead of listing and stat-ing every file in saves/.
+//
+// Every save belongs to a slot. A single game's saves are in the unnamed slot; a server keeps all of its
+// sessions' slots in one database, each session's store a view of it (see slot()) sharing the connection,
+// so a thousand players are a thousand rows apart rather than a thousand open databases. Databases from
+// before slots have all their saves in the unnamed slot.
+//
+// The first bytes of each save are also kept in save_heads, so listing saves never touches the saves
+// themselves: SQLite can't read part of a large blob without walking all of it. Header readers rarely need
+// more than the head (a binary header is 64 bytes, and a JSON save's player ends within its first few
+// hundred); a reader that does is given the whole save instead. Databases from before save_heads get their
+// heads filled in when they're opened.
+public class SqliteSaveStore implements SaveStore {
+    private static final int HEAD_BYTES = 1024;
+
+    // The connection and statements, shared by every slot's view and used by one of them at a time
+    private static final class Database {
+        final File file;
+        final Connection conn;
+        final PreparedStatement insert;
+        final PreparedStatement insertHead;
+        final PreparedStatement selectLatest;
+        final PreparedStatement selectAny;
+        final PreparedStatement selectAll;
+        final PreparedStatement selectById;
+
+        Database(File file) throws IOException {
+            this.file = file;
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) parent.mkdirs();
+
+            try {
+                conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+                try (Statement st = conn.createStatement()) {
+                    // WAL lets the autosave thread write without blocking reads, and NORMAL sync is still
+                    // crash-safe in WAL mode
+                    st.execute("PRAGMA journal_mode=WAL");
+                    st.execute("PRAGMA synchronous=NORMAL");
+                    st.execute("CREATE TABLE IF NOT EXISTS saves ("
+                        + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + "slot TEXT NOT NULL DEFAULT '', "
+                        + "created_at INTEGER NOT NULL, "
+                        + "data BLOB NOT NULL)");
+                    if (!hasColumn(st, "saves", "slot")) st.execute("ALTER TABLE saves ADD COLUMN slot TEXT NOT NULL DEFAULT ''");
+                    st.execute("DROP INDEX IF EXISTS saves_created_at");
+                    st.execute("CREATE INDEX IF NOT EXISTS saves_slot_created_at ON saves(slot, created_at)");
+                    st.execute("CREATE TABLE IF NOT EXISTS save_heads ("
+                        + "id INTEGER PRIMARY KEY REFERENCES saves(id), "
+                        + "head BLOB NOT NULL, "
+                        + "size INTEGER NOT NULL)");
+                    st.execute("INSERT INTO save_heads (id, head, size) "
+                        + "SELECT id, substr(data, 1, " + HEAD_BYTES + "), length(data) FROM saves "
+                        + "WHERE id NOT IN (SELECT id FROM save_heads)");
+                }
+
+                insert = conn.prepareStatement("INSERT INTO saves (slot, created_at, data) VALUES (?, ?, ?)");
+                insertHead = conn.prepareStatement("INSERT INTO save_heads (id, head, size) VALUES (last_insert_rowid(), ?, ?)");
+                selectLatest = conn.prepareStatement("SELECT id, data FROM saves WHERE slot = ? ORDER BY created_at DESC, id DESC LIMIT 1");
+                selectAny = conn.prepareStatement("SELECT 1 FROM saves WHERE slot = ? LIMIT 1");
+                selectAll = conn.prepareStatement("SELECT h.id, h.head, h.size FROM saves s JOIN save_heads h ON h.id = s.id "
+                    + "WHERE s.slot = ? ORDER BY s.created_at, s.id");
+                selectById = conn.prepareStatement("SELECT data FROM saves WHERE id = ?");
+            } catch (SQLException e) {
+                throw new IOException("Failed to open save database " + file.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+
+        private static boolean hasColumn(Statement st, String table, String column) throws SQLException {
+            try (ResultSet rs = st.executeQuery("PRAGMA table_info(" + table + ")")) {
+                while (rs.next()) {
+                    if (rs.getString("name").equals(column)) return true;
+                }
+            }
+            return false;
+        }
+
+        void close() {
+            try {
+                insert.close();
+                insertHead.close();
+                selectLatest.close();
+                selectAny.close();
+                selectAll.close();
+                selectById.close();
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close save database: " + e.getMessage());
+            }
+        }
+    }
+
+    private final Database db;
+    private final String slot;
+    private final boolean ownsDatabase;
+
+    // The unnamed slot of the database in dbFile
+    public SqliteSaveStore(File dbFile) throws IOException {
+        this(new Database(dbFile), "", true);
+    }
+
+    private SqliteSaveStore(Database db, String slot, boolean ownsDatabase) {
+        this.db = db;
+        this.slot = slot;
+        this.ownsDatabase = ownsDatabase;
+    }
+
+    // The saves of one slot in the same database, through the same connection. Closing the view leaves the
+    // database open; closing this store closes it for every view.
+    public SqliteSaveStore slot(String name) {
+        return new SqliteSaveStore(db, name, false);
+    }
+
+    @Override
+    public String write(long timestamp, Writer writer) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        writer.writeTo(buf);
+        synchronized (db) {
+            try {
+                insert(new long[] { timestamp }, new byte[][] { buf.toByteArray() });
+            } catch (SQLException | RuntimeException e) {
+                throw new IOException("Failed to write save: " + e.getMessage(), e);
+            }
+        }
+        return this + " @ " + timestamp;
+    }
+
+    // Write several serialized saves in one transaction (SaveMigrator --import-into uses it to bring in
+    // file saves); either all of them are stored or none are
+    public void writeBatch(long[] timestamps, byte[][] saves) throws IOException {
+        synchronized (db) {
+            try {
+                insert(timestamps, saves);
+            } catch (SQLException | RuntimeException e) {
+                throw new IOException("Failed to write save batch: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Each save and its head go in together, all in one transaction. Callers hold db's lock.
+    private void insert(long[] timestamps, byte[][] saves) throws SQLException {
+        boolean autoCommit = db.conn.getAutoCommit();
+        db.conn.setAutoCommit(false);
+        try {
+            for (int i = 0; i < timestamps.length; i++) {
+                db.insert.setString(1, slot);
+                db.insert.setLong(2, timestamps[i]);
+                db.insert.setBytes(3, saves[i]);
+                db.insert.executeUpdate();
+                db.insertHead.setBytes(1, Arrays.copyOf(saves[i], Math.min(saves[i].length, HEAD_BYTES)));
+                db.insertHead.setLong(2, saves[i].length);
+                db.insertHead.executeUpdate();
+            }
+            db.conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            db.conn.rollback();
+            throw e;
+        } finally {
+            db.conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    @Override
+    public <T> T readLatest(Reader<T> reader) throws IOException {
+        synchronized (db) {
+            try {
+                db.selectLatest.setString(1, slot);
+                try (ResultSet rs = db.selectLatest.executeQuery()) {
+                    if (!rs.next()) return null;
+                    try (InputStream in = rs.getBinaryStream("data")) {
+                        return reader.readFrom(in);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to read save: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public <T> List<T> list(Reader<T> reader) {
+        List<T> results = new ArrayList<>();
+        synchronized (db) {
+            try {
+                db.selectAll.setString(1, slot);
+                try (ResultSet rs = db.selectAll.executeQuery()) {
+                    while (rs.next()) {
+                        byte[] head = rs.getBytes(2);
+                        if (head == null) head = new byte[0];
+                        try {
+                            results.add(reader.readFrom(new PrefixStream(head, rs.getLong(3) > head.length)));
+                        } catch (PrefixStream.Exhausted e) {
+                            T whole = readById(rs.getLong(1), reader);
+                            if (whole != null) results.add(whole);
+                        } catch (IOException e) {
+                            // unreadable save, skip it
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Failed to list saves: " + e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    // The whole of one save, for readers that needed more than its head; null if unreadable. Callers hold
+    // db's lock.
+    private <T> T readById(long id, Reader<T> reader) throws SQLException {
+        db.selectById.setLong(1, id);
+        try (ResultSet rs = db.selectById.executeQuery()) {
+            if (!rs.next()) return null;
+            try (InputStream in = rs.getBinaryStream(1)) {
+                return reader.readFrom(in);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    // A save's head. Reading past its end, when the save is longer, throws Exhausted rather than letting the
+    // reader take the head for the whole save.
+    private static final class PrefixStream extends InputStream {
+        static final class Exhausted extends IOException {
+            private static final long serialVersionUID = 1L;
+
+            Exhausted() {
+                super("Save is longer than its head");
+            }
+        }
+
+        private final byte[] head;
+        private final boolean truncated;
+        private int pos;
+
+        PrefixStream(byte[] head, boolean truncated) {
+            this.head = head;
+            this.truncated = truncated;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos < head.length) return head[pos++] & 0xff;
+            if (truncated) throw new Exhausted();
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (pos >= head.length) {
+                if (truncated) throw new Exhausted();
+                return -1;
+            }
+            int n = Math.min(len, head.length - pos);
+            System.arraycopy(head, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return head.length - pos;
+        }
+    }
+
+    @Override
+    public boolean hasSaves() {
+        synchronized (db) {
+            try {
+                db.selectAny.setString(1, slot);
+                try (ResultSet rs = db.selectAny.executeQuery()) {
+                    return rs.next();
+                }
+            } catch (SQLException e) {
+                System.err.println("Failed to query saves: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!ownsDatabase) return;
+        synchronized (db) {
+            db.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return slot.isEmpty() ? db.file.getPath() : db.file.getPath() + " (slot " + slot + ")";
+    }
+}
@@ -0,0 +1,136 @@
+package http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+// One HTTP client shared by every API we call. java.net.http.HttpClient pools keep-alive connections and
+// negotiates HTTP/2 on its own; on top of that this adds gzip, per-request timeouts, retries with jittered
+// exponential backoff and a circuit breaker. After enough consecutive failures the breaker opens and
+// requests fail immediately with CircuitOpenException, so callers drop to their fallbacks instead of
+// waiting on timeouts every shift.
+public class ApiClient {
+    public static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    private static final ApiClient SHARED = new ApiClient(
+        Duration.ofSeconds(5), Duration.ofSeconds(10), 3, 5, Duration.ofSeconds(30));
+
+    public static ApiClient shared() {
+        return SHARED;
+    }
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxAttempts;
+    private final long baseBackoffMillis = 200;
+
+    // Circuit breaker state
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil = 0;
+
+    public ApiClient(Duration connectTimeout, Duration requestTimeout, int maxAttempts, int failureThreshold, Duration openDuration) {
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2) // falls back to HTTP/1.1 when the server doesn't speak h2
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.requestTimeout = requestTimeout;
+        this.maxAttempts = maxAttempts;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+    }
+
+    public InputStream get(String url) throws IOException {
+        return get(url, requestTimeout);
+    }
+
+    // GET a URL and return its (decompressed) body; the caller closes the stream
+    public InputStream get(String url, Duration timeout) throws IOException {
+        if (isOpen()) {
+            throw new CircuitOpenException("Circuit open, skipping request to " + URI.create(url).getHost());
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+            .timeout(timeout)
+            .header("Accept-Encoding", "gzip")
+            .GET()
+            .build();
+
+        IOException last = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                HttpResponse<InputStream> resp = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                int status = resp.statusCode();
+                if (status >= 200 && status < 300) {
+                    consecutiveFailures.set(0);
+                    return decode(resp);
+                }
+
+                resp.body().close();
+                last = new IOException("HTTP " + status + " from " + request.uri().getHost());
+
+                // Client errors won't fix themselves and don't mean the server is down
+                if (status < 500 && status != 429) {
+                    throw last;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while requesting " + url);
+            } catch (IOException e) {
+                if (e == last) throw e;
+                last = e;
+            }
+
+            if (attempt < maxAttempts) backoff(attempt);
+        }
+
+        recordFailure();
+        throw last;
+    }
+
+    private InputStream decode(HttpResponse<InputStream> resp) throws IOException {
+        String encoding = resp.headers().firstValue("Content-Encoding").orElse("");
+        if (encoding.equalsIgnoreCase("gzip")) {
+            return new GZIPInputStream(resp.body());
+        }
+        return resp.body();
+    }
+
+    // Full jitter: sleep a random time up to base * 2^(attempt - 1)
+    private void backoff(int attempt) throws InterruptedIOException {
+        long cap = baseBackoffMillis << (attempt - 1);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    private void recordFailure() {
+        // Once open, the first request after openUntil is the trial; another failure reopens it
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil = System.currentTimeMillis() + openMillis;
+        }
+    }
+
+    public boolean isOpen() {
+        return System.currentTimeMillis() < openUntil;
+    }
+}
@@ -0,0 +1,179 @@
+package http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Exercises ApiClient against a local stub server (the JDK's com.sun.net.httpserver), so its retries,
+// timeouts and circuit breaker can be checked without the real APIs:
+//
+//   java -cp <classpath> http.ApiClientCheck
+//
+// Each check gets its own path on the stub, which counts the requests it sees. Prints one line per check
+// and exits with 1 if any of them failed.
+public class ApiClientCheck {
+    private static final String BODY = "{\"ok\":true}";
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final String base;
+    private int failures = 0;
+
+    private ApiClientCheck() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers); // a slow handler mustn't hold up the client's retry
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // Serves path: the first failCount requests get failStatus, later ones BODY (gzipped if asked)
+    private AtomicInteger stub(String path, int failCount, int failStatus, boolean gzip, long delayMillis) {
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext(path, exchange -> {
+            int n = requests.incrementAndGet();
+            try {
+                if (delayMillis > 0) Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (n <= failCount) {
+                reply(exchange, failStatus, "failing".getBytes(StandardCharsets.UTF_8), false);
+            } else {
+                reply(exchange, 200, BODY.getBytes(StandardCharsets.UTF_8), gzip);
+            }
+        });
+        return requests;
+    }
+
+    private static void reply(HttpExchange exchange, int status, byte[] body, boolean gzip) throws IOException {
+        if (gzip) {
+            ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(zipped)) {
+                out.write(body);
+            }
+            body = zipped.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static ApiClient client(Duration timeout, int maxAttempts, int failureThreshold, Duration openDuration) {
+        return new ApiClient(Duration.ofSeconds(2), timeout, maxAttempts, failureThreshold, openDuration);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void check(String name, boolean passed, String detail) {
+        System.out.println((passed ? "PASS  " : "FAIL  ") + name + (detail.isEmpty() ? "" : " (" + detail + ")"));
+        if (!passed) failures++;
+    }
+
+    private void gzipBody() {
+        AtomicInteger requests = stub("/gzip", 0, 0, true, 0);
+        try {
+            String body = read(client(Duration.ofSeconds(2), 3, 5, Duration.ofSeconds(30)).get(base + "/gzip"));
+            check("gzip body is decoded", body.equals(BODY) && requests.get() == 1, body);
+        } catch (IOException e) {
+            check("gzip body is decoded", false, e.toString());
+        }
+    }
+
+    private void retriesServerErrors() {
+        AtomicInteger requests = stub("/flaky", 2, 503, false, 0);
+        try {
+            String body = read(client(Duration.ofSeconds(2), 3, 5, Duration.ofSeconds(30)).get(base + "/flaky"));
+            check("503s are retried until a success", body.equals(BODY) && requests.get() == 3, requests.get() + " requests");
+        } catch (IOException e) {
+            check("503s are retried until a success", false, e.toString());
+        }
+    }
+
+    private void clientErrorsFailFast() {
+        AtomicInteger requests = stub("/missing", Integer.MAX_VALUE, 404, false, 0);
+        ApiClient client = client(Duration.ofSeconds(2), 3, 1, Duration.ofSeconds(30));
+        try {
+            read(client.get(base + "/missing"));
+            check("404 fails without retrying", false, "request succeeded");
+        } catch (IOException e) {
+            check("404 fails without retrying", requests.get() == 1 && !client.isOpen(),
+                requests.get() + " requests, breaker " + (client.isOpen() ? "open" : "closed"));
+        }
+    }
+
+    private void timesOut() {
+        AtomicInteger requests = stub("/slow", 0, 0, false, 1500);
+        long start = System.nanoTime();
+        try {
+            read(client(Duration.ofMillis(200), 2, 5, Duration.ofSeconds(30)).get(base + "/slow"));
+            check("slow responses time out", false, "request succeeded");
+        } catch (IOException e) {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            // Two 200 ms attempts and at most 200 ms of backoff, well short of the 1.5 s the server takes
+            check("slow responses time out", requests.get() == 2 && millis < 1200, requests.get() + " requests in " + millis + " ms");
+        }
+    }
+
+    private void circuitBreaker() {
+        AtomicInteger requests = stub("/down", 2, 500, false, 0);
+        ApiClient client = client(Duration.ofSeconds(2), 1, 2, Duration.ofMillis(500));
+        for (int i = 0; i < 2; i++) {
+            try {
+                read(client.get(base + "/down"));
+            } catch (IOException e) {
+                // expected: the server is down for the first two requests
+            }
+        }
+        try {
+            read(client.get(base + "/down"));
+            check("breaker opens after repeated failures", false, "request went through");
+        } catch (ApiClient.CircuitOpenException e) {
+            check("breaker opens after repeated failures", requests.get() == 2, requests.get() + " requests");
+        } catch (IOException e) {
+            check("breaker opens after repeated failures", false, e.toString());
+        }
+
+        try {
+            Thread.sleep(600);
+            String body = read(client.get(base + "/down"));
+            check("breaker lets a trial through after the cool-down", body.equals(BODY) && !client.isOpen(), requests.get() + " requests");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            check("breaker lets a trial through after the cool-down", false, e.toString());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ApiClientCheck checks = new ApiClientCheck();
+        try {
+            checks.gzipBody();
+            checks.retriesServerErrors();
+            checks.clientErrorsFailFast();
+            checks.timesOut();
+            checks.circuitBreaker();
+        } finally {
+            checks.server.stop(0);
+            checks.handlers.shutdownNow();
+        }
+        System.out.println(checks.failures == 0 ? "All checks passed." : checks.failures + " check(s) failed.");
+        System.exit(checks.failures == 0 ? 0 : 1);
+    }
+}
@@ -19,5 +19,9 @@ public abstract class Item {
         return price;
     }
 
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
     public abstract boolean use(Player player);
 }
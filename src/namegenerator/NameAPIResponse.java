@@ -1,11 +1,16 @@
 package namegenerator;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Jackson JSON library (provided by maven)
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class NameAPIResponse {
     public static class NameData {
@@ -14,13 +19,21 @@ public class NameAPIResponse {
         public final String last_name;
         public final int age;
         public final String dob;
+        public final String gender; // may be null
+        public final String nat;    // nationality code, may be null
 
         public NameData(String title, String first_name, String last_name, int age, String dob) {
+            this(title, first_name, last_name, age, dob, null, null);
+        }
+
+        public NameData(String title, String first_name, String last_name, int age, String dob, String gender, String nat) {
             this.title = title;
             this.first_name = first_name;
             this.last_name = last_name;
             this.age = age;
             this.dob = dob;
+            this.gender = gender;
+            this.nat = nat;
         }
 
         public String getFullName() {
@@ -41,45 +54,208 @@ public class NameAPIResponse {
         }
     }
 
-    private ArrayList<NameData> generatedNames;
+    // JsonFactory is thread-safe and expensive to build, so every response shares one
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Titles, genders and nationalities come from a handful of values; keep one copy of each instead of
+    // one per name. Capped so odd payloads can't grow it forever.
+    private static final ConcurrentHashMap<String, String> DICTIONARY = new ConcurrentHashMap<>();
+    private static final int DICTIONARY_LIMIT = 1024;
+
+    // The names are kept in columns rather than as NameData objects (responses stay in NameGenerator's
+    // history long after their names are handed out). First name, last name and dob are runs of one
+    // shared char array, found through spans (start and length of each, six ints per name). Title,
+    // gender and nationality are codes into this response's dictionary, -1 for a missing value.
+    // NameData objects are only built when names are asked for.
+    private static final int TITLE = 0, GENDER = 1, NAT = 2;
+    private static final int FIRST = 0, LAST = 1, DOB = 2;
+
+    private int count = -1; // -1 until a results array has been parsed
+    private char[] text = new char[0];
+    private int textLength;
+    private int[] spans = new int[0];
+    private short[] codes = new short[0];
+    private int[] ages = new int[0];
+    private String[] dictionary = new String[0];
 
     public NameAPIResponse(String json) {
         if (json == null) {
             return;
         }
 
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(json);
-            JsonNode resultsNode = root.path("results");
-            if (resultsNode.isArray()) { // validation
-                generatedNames = new ArrayList<NameData>();
-                JsonNode currentNameNode = resultsNode.get(0).path("name");
-                JsonNode currentDobNode = resultsNode.get(0).path("dob");
-                String json_Title = currentNameNode.path("title").asText();
-                String json_First = currentNameNode.path("first").asText();
-                String json_Last = currentNameNode.path("last").asText();
-                int json_Age = currentDobNode.path("age").asInt();
-                String json_Dob = currentDobNode.path("date").asText();
-
-                generatedNames.add(new NameData(json_Title, json_First, json_Last, json_Age, json_Dob));
-            }
+        try (JsonParser p = JSON.createParser(json)) {
+            parse(p);
+        } catch (Exception e) {
+            count = -1;
+        }
+    }
 
+    // Parse straight from the HTTP body without buffering it into a String first
+    public NameAPIResponse(InputStream in) {
+        if (in == null) {
+            return;
+        }
+
+        try (JsonParser p = JSON.createParser(in)) {
+            parse(p);
         } catch (Exception e) {
-            generatedNames = null;
+            count = -1;
+        }
+    }
+
+    // Token-streaming parse that only looks at the fields we use; everything else (location, login,
+    // pictures, ...) is skipped without being materialized
+    private void parse(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) return;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            JsonToken t = p.nextToken();
+            if ("results".equals(field) && t == JsonToken.START_ARRAY) { // validation
+                count = 0;
+                HashMap<String, Short> lookup = new HashMap<>();
+                ArrayList<String> values = new ArrayList<>();
+                text = new char[1024];
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    parseResult(p, lookup, values);
+                }
+                dictionary = values.toArray(new String[0]);
+                text = Arrays.copyOf(text, textLength);
+                spans = Arrays.copyOf(spans, count * 6);
+                codes = Arrays.copyOf(codes, count * 3);
+                ages = Arrays.copyOf(ages, count);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private void parseResult(JsonParser p, HashMap<String, Short> lookup, ArrayList<String> values) throws IOException {
+        if (count == ages.length) {
+            int capacity = Math.max(16, count * 2);
+            spans = Arrays.copyOf(spans, capacity * 6);
+            codes = Arrays.copyOf(codes, capacity * 3);
+            ages = Arrays.copyOf(ages, capacity);
+        }
+        int n = count;
+        // Missing fields read as "" (a zero-length span), except gender and nat, which stay null
+        Arrays.fill(spans, n * 6, n * 6 + 6, 0);
+        codes[n * 3 + TITLE] = code("", lookup, values);
+        codes[n * 3 + GENDER] = -1;
+        codes[n * 3 + NAT] = -1;
+        ages[n] = 0;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            JsonToken t = p.nextToken();
+            switch (field) {
+                case "gender":
+                    codes[n * 3 + GENDER] = code(p.getValueAsString(), lookup, values);
+                    break;
+                case "nat":
+                    codes[n * 3 + NAT] = code(p.getValueAsString(), lookup, values);
+                    break;
+                case "name":
+                    if (t != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String sub = p.getCurrentName();
+                        p.nextToken();
+                        if ("title".equals(sub)) codes[n * 3 + TITLE] = code(p.getValueAsString(""), lookup, values);
+                        else if ("first".equals(sub)) appendText(p, n, FIRST);
+                        else if ("last".equals(sub)) appendText(p, n, LAST);
+                        else p.skipChildren();
+                    }
+                    break;
+                case "dob":
+                    if (t != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String sub = p.getCurrentName();
+                        p.nextToken();
+                        if ("date".equals(sub)) appendText(p, n, DOB);
+                        else if ("age".equals(sub)) ages[n] = p.getValueAsInt();
+                        else p.skipChildren();
+                    }
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        count++;
+    }
+
+    // Copies the current value's characters into the text column (strings straight from the parser's
+    // buffer, without a String) and records their span
+    private void appendText(JsonParser p, int n, int column) throws IOException {
+        char[] chars;
+        int off, len;
+        if (p.currentToken() == JsonToken.VALUE_STRING) {
+            chars = p.getTextCharacters();
+            off = p.getTextOffset();
+            len = p.getTextLength();
+        } else {
+            String value = p.getValueAsString("");
+            chars = value.toCharArray();
+            off = 0;
+            len = chars.length;
         }
+        if (textLength + len > text.length) text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + len));
+        System.arraycopy(chars, off, text, textLength, len);
+        spans[n * 6 + column * 2] = textLength;
+        spans[n * 6 + column * 2 + 1] = len;
+        textLength += len;
+    }
+
+    private static short code(String value, HashMap<String, Short> lookup, ArrayList<String> values) {
+        if (value == null) return -1;
+        Short code = lookup.get(value);
+        if (code != null) return code;
+        if (values.size() == Short.MAX_VALUE) throw new IllegalStateException("Too many distinct values in one response");
+        short next = (short) values.size();
+        values.add(intern(value));
+        lookup.put(value, next);
+        return next;
+    }
+
+    private static String intern(String value) {
+        if (value == null) return null;
+        String existing = DICTIONARY.get(value);
+        if (existing != null) return existing;
+        if (DICTIONARY.size() >= DICTIONARY_LIMIT) return value;
+        existing = DICTIONARY.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    public int size() {
+        return Math.max(count, 0);
+    }
+
+    // The i-th name, built from the columns
+    public NameData get(int i) {
+        if (i < 0 || i >= size()) throw new IndexOutOfBoundsException("Name " + i + " of " + size());
+        return new NameData(decode(codes[i * 3 + TITLE]), span(i, FIRST), span(i, LAST), ages[i], span(i, DOB),
+            decode(codes[i * 3 + GENDER]), decode(codes[i * 3 + NAT]));
+    }
+
+    private String span(int i, int column) {
+        return new String(text, spans[i * 6 + column * 2], spans[i * 6 + column * 2 + 1]);
+    }
+
+    private String decode(short code) {
+        return code < 0 ? null : dictionary[code];
     }
 
     public NameData[] getGeneratedNames() {
-        return generatedNames.toArray(new NameData[generatedNames.size()]);
+        NameData[] names = new NameData[size()];
+        for (int i = 0; i < names.length; i++) names[i] = get(i);
+        return names;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (NameData data : generatedNames) {
-            sb.append(data.toString()).append("\n");
+        for (int i = 0; i < size(); i++) {
+            sb.append(get(i).toString()).append("\n");
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package namegenerator;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import game.GameOptions;
+import util.Benchmark;
+
+// Times NameAPIResponse's streaming parse against the JsonNode tree parse it replaced:
+//
+//   java -cp <classpath> namegenerator.NameBenchmark [--results=n,n,...] [--iterations=n] [--runs=n] [--seed=n]
+//
+// Each payload is a randomuser.me response with the given number of results, laid out like
+// external/example_name_api_response.txt (location, login hashes, pictures and all) plus the dob and nat
+// fields the game asks for. Both parsers read the same String and their names are compared before anything
+// is timed; the streaming parse is also timed from the body's bytes, the way NameGenerator feeds it. The
+// tree parse is the one NameAPIResponse used before it streamed, including its ObjectMapper per response.
+public class NameBenchmark {
+    private static final String[] TITLES = { "Mr", "Mrs", "Ms", "Miss", "Monsieur", "Madame" };
+    private static final String[] FIRST = { "Cassandre", "Liam", "Aino", "Mehmet", "Sofia", "Ruben", "Ana", "Noah" };
+    private static final String[] LAST = { "Petit", "Walker", "Lehtonen", "Yilmaz", "Rossi", "Jansen", "Silva" };
+    private static final String[] NATS = { "FR", "US", "FI", "TR", "IT", "NL", "BR", "CH" };
+
+    // The tree parse as it was, kept here as the baseline
+    static NameAPIResponse.NameData[] treeParse(String json) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode root = mapper.readTree(json);
+        JsonNode resultsNode = root.path("results");
+        if (!resultsNode.isArray()) return null;
+        ArrayList<NameAPIResponse.NameData> names = new ArrayList<>(resultsNode.size());
+        for (JsonNode result : resultsNode) {
+            JsonNode name = result.path("name");
+            JsonNode dob = result.path("dob");
+            names.add(new NameAPIResponse.NameData(name.path("title").asText(), name.path("first").asText(),
+                name.path("last").asText(), dob.path("age").asInt(), dob.path("date").asText()));
+        }
+        return names.toArray(new NameAPIResponse.NameData[0]);
+    }
+
+    // A response of n results in randomuser.me's layout
+    static String payload(int n, SplittableRandom rng) {
+        StringBuilder sb = new StringBuilder("{\n  \"results\": [");
+        for (int i = 0; i < n; i++) {
+            boolean female = rng.nextBoolean();
+            int year = 1950 + rng.nextInt(55);
+            String hash = Long.toHexString(rng.nextLong()) + Long.toHexString(rng.nextLong());
+            sb.append(i == 0 ? "\n" : ",\n")
+                .append("    {\n      \"gender\": \"").append(female ? "female" : "male").append("\",\n")
+                .append("      \"name\": {\n        \"title\": \"").append(pick(TITLES, rng)).append("\",\n")
+                .append("        \"first\": \"").append(pick(FIRST, rng)).append("\",\n")
+                .append("        \"last\": \"").append(pick(LAST, rng)).append("\"\n      },\n")
+                .append("      \"location\": {\n        \"street\": {\n          \"number\": ").append(rng.nextInt(9999))
+                .append(",\n          \"name\": \"Rue du Dauphiné\"\n        },\n")
+                .append("        \"city\": \"Saint-Pierre\",\n        \"state\": \"Jura\",\n        \"country\": \"France\",\n")
+                .append("        \"postcode\": ").append(10000 + rng.nextInt(90000)).append(",\n")
+                .append("        \"coordinates\": {\n          \"latitude\": \"-13.7595\",\n          \"longitude\": \"88.1536\"\n        },\n")
+                .append("        \"timezone\": {\n          \"offset\": \"+8:00\",\n")
+                .append("          \"description\": \"Beijing, Perth, Singapore, Hong Kong\"\n        }\n      },\n")
+                .append("      \"login\": {\n        \"uuid\": \"2c8d5cd8-fa33-4236-a3b8-ed24f4acd10d\",\n")
+                .append("        \"username\": \"orangetiger").append(rng.nextInt(1000)).append("\",\n")
+                .append("        \"password\": \"redbone\",\n        \"salt\": \"Nlmloxym\",\n")
+                .append("        \"md5\": \"").append(hash).append("\",\n")
+                .append("        \"sha1\": \"").append(hash).append("1234abcd\",\n")
+                .append("        \"sha256\": \"").append(hash).append(hash).append("\"\n      },\n")
+                .append("      \"dob\": {\n        \"date\": \"").append(year).append("-0").append(1 + rng.nextInt(9))
+                .append("-1").append(rng.nextInt(10)).append("T09:44:18.674Z\",\n")
+                .append("        \"age\": ").append(2025 - year).append("\n      },\n")
+                .append("      \"registered\": {\n        \"date\": \"2008-03-10T11:56:50.027Z\",\n        \"age\": 15\n      },\n")
+                .append("      \"phone\": \"02-68-80-08-46\",\n      \"cell\": \"06-36-27-45-61\",\n")
+                .append("      \"id\": {\n        \"name\": \"INSEE\",\n        \"value\": \"2530022140942 06\"\n      },\n")
+                .append("      \"picture\": {\n        \"large\": \"https://randomuser.me/api/portraits/women/96.jpg\",\n")
+                .append("        \"medium\": \"https://randomuser.me/api/portraits/med/women/96.jpg\",\n")
+                .append("        \"thumbnail\": \"https://randomuser.me/api/portraits/thumb/women/96.jpg\"\n      },\n")
+                .append("      \"nat\": \"").append(pick(NATS, rng)).append("\"\n    }");
+        }
+        return sb.append("\n  ],\n  \"info\": {\n    \"seed\": \"7fa1c1d3\",\n    \"results\": ").append(n)
+            .append(",\n    \"page\": 1,\n    \"version\": \"1.4\"\n  }\n}\n").toString();
+    }
+
+    private static String pick(String[] values, SplittableRandom rng) {
+        return values[rng.nextInt(values.length)];
+    }
+
+    // Null if the two parses agree, otherwise what differs
+    static String compare(NameAPIResponse.NameData[] tree, NameAPIResponse streamed) {
+        if (tree == null) return "tree parse found no results";
+        if (tree.length != streamed.size()) return tree.length + " names from the tree, " + streamed.size() + " streamed";
+        for (int i = 0; i < tree.length; i++) {
+            NameAPIResponse.NameData a = tree[i], b = streamed.get(i);
+            if (!a.title.equals(b.title) || !a.first_name.equals(b.first_name) || !a.last_name.equals(b.last_name)
+                    || a.age != b.age || !a.dob.equals(b.dob)) {
+                return "name " + i + " differs: " + a + " / " + b;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        GameOptions options = new GameOptions(args);
+        int runs = Math.max(2, options.getInt("runs", 6));
+        SplittableRandom rng = new SplittableRandom(options.getLong("seed", 1));
+
+        System.out.println(String.format("%7s  %9s  %11s  %11s  %11s  %11s  %7s  %11s  %11s  %7s", "Results", "Payload", "Tree",
+            "allocated", "Streamed", "allocated", "", "From body", "allocated", ""));
+        for (String r : options.get("results", "1,50,500,5000").split(",")) {
+            int results;
+            try {
+                results = Math.max(1, Integer.parseInt(r.trim()));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid --results entry '" + r + "', skipping it.");
+                continue;
+            }
+            String json = payload(results, rng);
+            String mismatch = compare(treeParse(json), new NameAPIResponse(json));
+            if (mismatch != null) {
+                System.out.println(results + " results: parses differ, " + mismatch);
+                System.exit(2);
+            }
+
+            // About 20 MB of JSON per batch unless --iterations says otherwise
+            int iterations = Math.max(1, options.getInt("iterations", 20_000_000 / json.length()));
+            Benchmark.Result tree = Benchmark.measure(runs, iterations, () -> {
+                try {
+                    return treeParse(json).length;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Benchmark.Result streamed = Benchmark.measure(runs, iterations, () -> new NameAPIResponse(json).size());
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            Benchmark.Result fromBody = Benchmark.measure(runs, iterations, () -> new NameAPIResponse(new ByteArrayInputStream(body)).size());
+
+            System.out.println(String.format("%7d  %9s  %11s  %11s  %11s  %11s  %6.1fx  %11s  %11s  %6.1fx", results,
+                Benchmark.bytes(body.length), Benchmark.nanos(tree.meanNanos), Benchmark.bytes(tree.bytes),
+                Benchmark.nanos(streamed.meanNanos), Benchmark.bytes(streamed.bytes), tree.meanNanos / streamed.meanNanos,
+                Benchmark.nanos(fromBody.meanNanos), Benchmark.bytes(fromBody.bytes), tree.meanNanos / fromBody.meanNanos));
+        }
+    }
+}
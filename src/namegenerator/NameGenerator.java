@@ -1,64 +1,141 @@
 package namegenerator;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import http.ApiClient;
+import util.RingBuffer;
+
+// Fetches random people from randomuser.me in batches and keeps them in a reservoir. takeName() hands
+// one out without blocking; when the reservoir drops below the low-water mark a background task fetches
+// another batch, so creating lots of characters costs a request per batch instead of one per name.
 public class NameGenerator {
 	private final String urlStr;
-	private ArrayList<NameAPIResponse> nameResponses;
+	private final ApiClient http = ApiClient.shared();
+	private final RingBuffer<NameAPIResponse> nameResponses;
+
+	// Name reservoir
+	private final ConcurrentLinkedQueue<NameAPIResponse.NameData> reservoir = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger reservoirSize = new AtomicInteger();
+	private final AtomicBoolean refilling = new AtomicBoolean(false);
+	private final ExecutorService refiller;
+	private final int batchSize;
+	private final int lowWaterMark;
+
+	public static final int DEFAULT_HISTORY = 16;
+	public static final int DEFAULT_BATCH_SIZE = 50;
+	public static final int DEFAULT_LOW_WATER_MARK = 10;
 
 	public NameGenerator() throws Exception {
+		this(DEFAULT_HISTORY, DEFAULT_BATCH_SIZE, DEFAULT_LOW_WATER_MARK);
+	}
+
+	public NameGenerator(int historyCapacity) throws Exception {
+		this(historyCapacity, DEFAULT_BATCH_SIZE, DEFAULT_LOW_WATER_MARK);
+	}
+
+	public NameGenerator(int historyCapacity, int batchSize, int lowWaterMark) throws Exception {
 		// use string format to build URL with desired fields
 		this.urlStr = String.format(
 			"https://randomuser.me//api?inc=%s,%s,%s,%s", "gender", "dob", "name", "nat");
 		
-		this.nameResponses = new ArrayList<NameAPIResponse>();
+		this.nameResponses = new RingBuffer<NameAPIResponse>(historyCapacity);
+		this.batchSize = batchSize;
+		this.lowWaterMark = lowWaterMark;
+		this.refiller = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "NameRefill");
+			t.setDaemon(true);
+			return t;
+		});
 	}
 
-	public int getResponseCount() {
+	public synchronized int getResponseCount() {
 		return nameResponses.size();
 	}
 
-	public NameAPIResponse getLatestResponse() {
-		if (nameResponses.isEmpty()) return null;
-		return nameResponses.get(nameResponses.size() - 1);
+	public synchronized NameAPIResponse getLatestResponse() {
+		return nameResponses.getLatest();
+	}
+
+	// Oldest-first copy of the retained responses (takeName() starts refills on its own, so a live view
+	// could change while it's read)
+	public synchronized List<NameAPIResponse> getAllResponses() {
+		return new ArrayList<>(nameResponses.view());
+	}
+
+	// Take a name from the reservoir without blocking. Returns null if it's empty (the caller should fall
+	// back to a default name); a refill is started whenever the reservoir runs low.
+	public NameAPIResponse.NameData takeName() {
+		NameAPIResponse.NameData name = reservoir.poll();
+		if (name != null) reservoirSize.decrementAndGet();
+		if (reservoirSize.get() < lowWaterMark) refillAsync();
+		return name;
+	}
+
+	// Take up to count names; may return fewer if the reservoir can't cover it yet
+	public List<NameAPIResponse.NameData> takeNames(int count) {
+		ArrayList<NameAPIResponse.NameData> names = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			NameAPIResponse.NameData name = takeName();
+			if (name == null) break;
+			names.add(name);
+		}
+		return names;
+	}
+
+	public int getReservoirSize() {
+		return reservoirSize.get();
+	}
+
+	// Fetch one batch in the background unless a refill is already running
+	public void refillAsync() {
+		if (!refilling.compareAndSet(false, true)) return;
+		try {
+			refiller.execute(() -> {
+				try {
+					getNewResponse();
+				} finally {
+					refilling.set(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			refilling.set(false); // executor shut down
+		}
 	}
 
-	public ArrayList<NameAPIResponse> getAllResponses() {
-		return new ArrayList<NameAPIResponse>(nameResponses);
+	public void shutdown() {
+		refiller.shutdownNow();
 	}
 
 	public NameAPIResponse getNewResponse() {
+		return getNewResponse(batchSize);
+	}
+
+	// Fetch a batch of names, add them to the reservoir and record the response
+	public NameAPIResponse getNewResponse(int results) {
 		try {
-			// Create connection and necessary abstractions
-			URL url = new URL(urlStr);
-			HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			int connStatus = conn.getResponseCode();
-			InputStream is = (connStatus >= 200 && connStatus < 300) ? conn.getInputStream() : conn.getErrorStream();
-			BufferedReader in = new BufferedReader(new InputStreamReader(is));
-			
-			// Read response
-			StringBuilder resp = new StringBuilder();
-			String line;
-			while ((line = in.readLine()) != null) {
-				resp.append(line).append('\n');
+			// Hand the body straight to our streaming parser and store the response
+			NameAPIResponse r;
+			try (InputStream in = http.get(urlStr + "&results=" + results)) {
+				r = new NameAPIResponse(in);
 			}
-			
-			// Close connections
-			in.close();
-			conn.disconnect();
 
 			// Log output (only for debugging)
-			// System.out.println("HTTP " + connStatus);
-			// System.out.println("Response: " + resp.toString());
+			// System.out.println("Response: " + r);
 
-			// Hand off raw data to our parser and store the response
-			NameAPIResponse r = new NameAPIResponse(resp.toString());
-			nameResponses.add(r);
+			for (NameAPIResponse.NameData name : r.getGeneratedNames()) {
+				reservoir.add(name);
+				reservoirSize.incrementAndGet();
+			}
+			synchronized (this) {
+				nameResponses.add(r);
+			}
 
 			return r;
 		} catch (Exception e) {
@@ -66,4 +143,4 @@ public class NameGenerator {
 			return null;
 		}
 	}
-}
\ No newline at end of file
+}
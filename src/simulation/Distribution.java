@@ -0,0 +1,133 @@
+package simulation;
+
+import java.util.Arrays;
+
+// Mergeable histogram of non-negative values with log-linear buckets: each power of two is split into
+// SUB_BUCKETS equal buckets, so quantiles are within about 1% of the true value (and exact for integers
+// below SUB_BUCKETS * 2), whatever the range. Values below 1 share one bucket. Each simulation task fills
+// its own and they are merged at the end, so nothing is shared between threads and memory doesn't grow
+// with the number of careers.
+public class Distribution {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private long[] counts = new long[SUB_BUCKETS];
+    private long count;
+    private double sum;
+    private double sumOfSquares;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        if (!(value >= 0)) value = 0; // negative or NaN
+        int i = bucket(value);
+        if (i >= counts.length) counts = Arrays.copyOf(counts, Math.max(i + 1, counts.length * 2));
+        counts[i]++;
+        count++;
+        sum += value;
+        sumOfSquares += value * value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(Distribution other) {
+        if (other.counts.length > counts.length) counts = Arrays.copyOf(counts, other.counts.length);
+        for (int i = 0; i < other.counts.length; i++) counts[i] += other.counts[i];
+        count += other.count;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Bucket 0 is [0, 1); after that, exponent and the top SUB_BITS mantissa bits
+    private static int bucket(double value) {
+        if (value < 1) return 0;
+        long bits = Double.doubleToRawLongBits(value);
+        int exponent = Math.getExponent(value);
+        int sub = (int) ((bits >>> (52 - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return 1 + exponent * SUB_BUCKETS + sub;
+    }
+
+    // Smallest value that falls in bucket i
+    private static double lowerBound(int i) {
+        if (i == 0) return 0;
+        int exponent = (i - 1) / SUB_BUCKETS;
+        int sub = (i - 1) % SUB_BUCKETS;
+        return Math.scalb(1.0 + (double) sub / SUB_BUCKETS, exponent);
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return count == 0 ? Double.NaN : sum / count; }
+    public double getMin() { return count == 0 ? Double.NaN : min; }
+    public double getMax() { return count == 0 ? Double.NaN : max; }
+
+    public double getStdDev() {
+        if (count < 2) return 0;
+        double mean = sum / count;
+        return Math.sqrt(Math.max(0, (sumOfSquares - count * mean * mean) / (count - 1)));
+    }
+
+    // Half-width of a 95% confidence interval for the mean
+    public double getMeanError() {
+        return count == 0 ? Double.NaN : 1.96 * getStdDev() / Math.sqrt(count);
+    }
+
+    // Lower bound of the bucket holding the p-th quantile, kept within [min, max]
+    public double quantile(double p) {
+        if (count == 0) return Double.NaN;
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.max(min, Math.min(max, lowerBound(i)));
+        }
+        return max;
+    }
+
+    // Equal-width bins for a quick text chart: bin i covers [start + i * width, start + (i + 1) * width)
+    public static class Histogram {
+        public final double start;
+        public final double width;
+        public final long[] counts;
+
+        Histogram(double start, double width, long[] counts) {
+            this.start = start;
+            this.width = width;
+            this.counts = counts;
+        }
+
+        public int bins() { return counts.length; }
+        public double lowerBound(int bin) { return start + bin * width; }
+    }
+
+    // At most maxBins bins from min to max. Bins are whole buckets: the width is a multiple of the widest
+    // bucket in range (the one holding max) and the edges are multiples of the width, so every bucket falls
+    // in exactly one bin and no bin is narrower than the resolution the counts were kept at (which would
+    // show empty bins between buckets that aren't there in the data).
+    public Histogram histogram(int maxBins) {
+        if (count == 0) return new Histogram(0, 0, new long[0]);
+        maxBins = Math.max(1, maxBins);
+        double unit = max < 1 ? 1 : Math.scalb(1.0, Math.getExponent(max) - SUB_BITS);
+        if (min < 1) unit = Math.max(unit, 1);
+        long multiple = Math.max(1, (long) Math.ceil((max - min) / maxBins / unit));
+        while (Math.floor(max / (multiple * unit)) - Math.floor(min / (multiple * unit)) + 1 > maxBins) multiple++;
+        double width = multiple * unit;
+        double first = Math.floor(min / width);
+
+        long[] result = new long[(int) (Math.floor(max / width) - first) + 1];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            int bin = (int) (Math.floor(lowerBound(i) / width) - first);
+            result[Math.max(0, Math.min(result.length - 1, bin))] += counts[i];
+        }
+        return new Histogram(first * width, width, result);
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) return "no data";
+        return String.format("mean %.2f, min %.2f, p10 %.2f, p50 %.2f, p90 %.2f, p99 %.2f, max %.2f",
+            getMean(), min, quantile(0.1), quantile(0.5), quantile(0.9), quantile(0.99), max);
+    }
+}
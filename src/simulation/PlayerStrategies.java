@@ -0,0 +1,112 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Built-in strategies, and the specs the simulation and tournament take on the command line:
+//
+//   work                          never buys anything
+//   drink-below:<stamina>         energy drink whenever stamina is at or below the threshold
+//   meth-below:<stamina>          meth whenever stamina is at or below the threshold
+//   name-tag-below:<rep>          name tag whenever reputation is below the threshold
+//   name-tag-before-review:<rep>  name tag on the shift before a review if reputation is below the threshold
+//
+// Specs joined with '+' are tried in order and the first one that wants to do something wins, e.g.
+// drink-below:35+name-tag-below:60. Each rule uses an item from the inventory if there is one, and buys one
+// first if it can afford it.
+public final class PlayerStrategies {
+    public static final String ENERGY_DRINK = "energy drink";
+    public static final String METH = "meth";
+    public static final String NAME_TAG = "name tag";
+
+    private PlayerStrategies() {}
+
+    public static PlayerStrategy work() {
+        return named("work", o -> PlayerStrategy.Action.WORK);
+    }
+
+    public static PlayerStrategy drinkBelow(int stamina) {
+        return named("drink-below:" + stamina, o -> o.getStamina() <= stamina ? useOrBuy(o, ENERGY_DRINK) : PlayerStrategy.Action.WORK);
+    }
+
+    public static PlayerStrategy methBelow(int stamina) {
+        return named("meth-below:" + stamina, o -> o.getStamina() <= stamina ? useOrBuy(o, METH) : PlayerStrategy.Action.WORK);
+    }
+
+    public static PlayerStrategy nameTagBelow(int reputation) {
+        return named("name-tag-below:" + reputation, o -> o.getReputation() < reputation ? useOrBuy(o, NAME_TAG) : PlayerStrategy.Action.WORK);
+    }
+
+    public static PlayerStrategy nameTagBeforeReview(int reputation) {
+        return named("name-tag-before-review:" + reputation, o -> o.getShiftsUntilReview() == 1 && o.getReputation() < reputation
+            ? useOrBuy(o, NAME_TAG) : PlayerStrategy.Action.WORK);
+    }
+
+    // The first strategy that doesn't just want to work decides
+    public static PlayerStrategy firstOf(List<PlayerStrategy> strategies) {
+        List<PlayerStrategy> copy = List.copyOf(strategies);
+        StringBuilder name = new StringBuilder();
+        for (PlayerStrategy s : copy) name.append(name.length() > 0 ? "+" : "").append(s.getName());
+        return named(name.toString(), o -> {
+            for (PlayerStrategy s : copy) {
+                PlayerStrategy.Action action = s.decide(o);
+                if (action.type != PlayerStrategy.Action.Type.WORK) return action;
+            }
+            return PlayerStrategy.Action.WORK;
+        });
+    }
+
+    // Use one if there is one, buy one if affordable, otherwise just work
+    private static PlayerStrategy.Action useOrBuy(PlayerStrategy.Observation o, String item) {
+        if (o.count(item) > 0) return PlayerStrategy.Action.use(item);
+        if (o.canAfford(item)) return PlayerStrategy.Action.buy(item);
+        return PlayerStrategy.Action.WORK;
+    }
+
+    // Throws IllegalArgumentException for a spec it doesn't know
+    public static PlayerStrategy parse(String spec) {
+        String[] parts = spec.trim().split("\\+");
+        if (parts.length > 1) {
+            List<PlayerStrategy> strategies = new ArrayList<>();
+            for (String part : parts) strategies.add(parse(part));
+            return firstOf(strategies);
+        }
+
+        String[] nameAndArg = spec.trim().split(":", 2);
+        String name = nameAndArg[0];
+        if (name.equals("work")) return work();
+        if (nameAndArg.length < 2) throw new IllegalArgumentException("Strategy '" + spec + "' needs a threshold, e.g. " + name + ":35");
+        int threshold;
+        try {
+            threshold = Integer.parseInt(nameAndArg[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid threshold in strategy '" + spec + "'");
+        }
+        switch (name) {
+            case "drink-below": return drinkBelow(threshold);
+            case "meth-below": return methBelow(threshold);
+            case "name-tag-below": return nameTagBelow(threshold);
+            case "name-tag-before-review": return nameTagBeforeReview(threshold);
+            default: throw new IllegalArgumentException("Unknown strategy '" + name + "'");
+        }
+    }
+
+    private interface Decision {
+        PlayerStrategy.Action decide(PlayerStrategy.Observation observation);
+    }
+
+    private static PlayerStrategy named(String name, Decision decision) {
+        return new PlayerStrategy() {
+            @Override
+            public PlayerStrategy.Action decide(PlayerStrategy.Observation observation) {
+                return decision.decide(observation);
+            }
+
+            @Override
+            public String getName() { return name; }
+
+            @Override
+            public String toString() { return name; }
+        };
+    }
+}
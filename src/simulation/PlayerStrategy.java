@@ -0,0 +1,69 @@
+package simulation;
+
+import java.util.Map;
+
+import characters.PlayerState;
+import game.Shop;
+
+// Plays the game instead of someone typing commands: before every shift the simulation shows the strategy
+// what the player would see and carries out the action it picks, asking again until it picks WORK (or has
+// asked MAX_ACTIONS_PER_SHIFT times, after which the player works anyway). One strategy object plays many
+// careers on many threads at once, so implementations must not keep per-career state; everything they
+// need is in the Observation. See PlayerStrategies for the built-in ones.
+public interface PlayerStrategy {
+    int MAX_ACTIONS_PER_SHIFT = 8;
+
+    Action decide(Observation observation);
+
+    // Short name for reports
+    String getName();
+
+    final class Action {
+        public enum Type { WORK, BUY, USE }
+
+        public static final Action WORK = new Action(Type.WORK, null);
+
+        public final Type type;
+        public final String item; // for BUY and USE
+
+        private Action(Type type, String item) {
+            this.type = type;
+            this.item = item;
+        }
+
+        public static Action buy(String item) { return new Action(Type.BUY, item); }
+        public static Action use(String item) { return new Action(Type.USE, item); }
+
+        @Override
+        public String toString() {
+            return item == null ? type.toString() : type + " " + item;
+        }
+    }
+
+    // What the player knows before a shift, including the demand factor the shift will be worked at
+    final class Observation {
+        private final PlayerState player;
+        private final double demandFactor;
+        private final int shiftsUntilReview;
+        private final Shop shop;
+
+        public Observation(PlayerState player, double demandFactor, int shiftsUntilReview, Shop shop) {
+            this.player = player;
+            this.demandFactor = demandFactor;
+            this.shiftsUntilReview = shiftsUntilReview;
+            this.shop = shop;
+        }
+
+        public int getStamina() { return player.getStamina(); }
+        public int getHealth() { return player.getHealth(); }
+        public double getMoney() { return player.getMoney(); }
+        public int getReputation() { return player.getReputation(); }
+        public int getShiftsWorked() { return player.getShiftsWorked(); }
+        public Map<String, Integer> getInventory() { return player.getInventory(); }
+        public int count(String item) { return player.getInventory().getOrDefault(item, 0); }
+        public double getDemandFactor() { return demandFactor; }
+        public int getShiftsUntilReview() { return shiftsUntilReview; } // 1 if this shift ends with a review
+        public double getPrice(String item) { return shop.getPrice(item); }
+        public boolean canAfford(String item) { return getMoney() >= getPrice(item); }
+    }
+}
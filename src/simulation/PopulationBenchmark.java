@@ -0,0 +1,89 @@
+package simulation;
+
+import java.util.SplittableRandom;
+
+import characters.Manager;
+import characters.Player;
+import characters.PlayerPopulation;
+import game.GameOptions;
+import game.GameRules;
+
+// Times shifts worked by a crowd of players, one Player object each against a PlayerPopulation, on one thread:
+//
+//   java -cp <classpath> simulation.PopulationBenchmark [--players=n] [--shifts=n] [--runs=n] [--seed=n] [rule overrides]
+//
+// Both crowds start as new players and work the same shifts: every player gets their own demand factor each
+// shift, from random weather through GameRules. After each run every player's stats are compared, so the
+// benchmark also checks that PlayerPopulation.applyShift matches Player.workShift exactly. The first of
+// several runs warms up the JVM and isn't timed.
+public class PopulationBenchmark {
+    private static final int DEMAND_TABLES = 16; // shift s uses table s % 16, so the tables fit in memory
+
+    // Each crowd works in a method of its own, so the JIT compiles the two loops separately rather than as
+    // parts of main. Both return the time taken in nanoseconds.
+    private static long work(Player[] crowd, Manager manager, double[][] demand, int shifts) {
+        long start = System.nanoTime();
+        for (int s = 0; s < shifts; s++) {
+            double[] table = demand[s % DEMAND_TABLES];
+            for (int i = 0; i < crowd.length; i++) crowd[i].workShift(manager, table[i]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long work(PlayerPopulation population, double[][] demand, int shifts) {
+        long start = System.nanoTime();
+        for (int s = 0; s < shifts; s++) population.applyShift(demand[s % DEMAND_TABLES]);
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        GameOptions options = new GameOptions(args);
+        int players = Math.max(1, options.getInt("players", 100_000));
+        int shifts = Math.max(1, options.getInt("shifts", 200));
+        int runs = Math.max(1, options.getInt("runs", 5));
+        long seed = options.getLong("seed", System.nanoTime());
+        GameRules rules = new GameRules(options);
+
+        // Weather varies from player to player: temperatures from 20 to 100 F, pressures from 995 to 1025 hPa,
+        // which reach every branch of the shift
+        SplittableRandom rng = new SplittableRandom(seed);
+        double[][] demand = new double[DEMAND_TABLES][players];
+        for (double[] table : demand) {
+            for (int i = 0; i < players; i++) table[i] = rules.demandFactor(1.0, 20 + rng.nextDouble() * 80, 995 + rng.nextDouble() * 30);
+        }
+
+        Manager manager = new Manager("Boss", 40);
+        double objectSeconds = 0, populationSeconds = 0;
+        for (int run = 0; run < runs; run++) {
+            Player[] crowd = new Player[players];
+            for (int i = 0; i < players; i++) crowd[i] = new Player("Charlie Dotter");
+            PlayerPopulation population = new PlayerPopulation(players);
+
+            long objectNanos = work(crowd, manager, demand, shifts);
+            long populationNanos = work(population, demand, shifts);
+
+            for (int i = 0; i < players; i++) {
+                Player p = crowd[i];
+                if (p.getMoney() != population.getMoney(i) || p.getStamina() != population.getStamina(i)
+                        || p.getReputation() != population.getReputation(i) || p.getShiftsWorked() != population.getShiftsWorked(i)
+                        || p.getHealth() != population.getHealth(i)) {
+                    System.out.println("Run " + (run + 1) + ": player " + i + " differs (--seed=" + seed + ")\nPlayer:\n" + p
+                        + "Population:\n" + population.get(i, p.getName()));
+                    System.exit(2);
+                }
+            }
+
+            if (run > 0 || runs == 1) {
+                objectSeconds += objectNanos / 1e9;
+                populationSeconds += populationNanos / 1e9;
+            }
+        }
+
+        int timed = runs == 1 ? 1 : runs - 1;
+        double playerShifts = (double) players * shifts * timed;
+        System.out.println(String.format("%d players x %d shifts, %d runs, --seed=%d: populations match", players, shifts, runs, seed));
+        System.out.println(String.format("Player objects:    %6.1f M player-shifts/s", playerShifts / Math.max(objectSeconds, 1e-9) / 1e6));
+        System.out.println(String.format("PlayerPopulation:  %6.1f M player-shifts/s (%.1fx)", playerShifts / Math.max(populationSeconds, 1e-9) / 1e6,
+            objectSeconds / Math.max(populationSeconds, 1e-9)));
+    }
+}
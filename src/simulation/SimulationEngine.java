@@ -0,0 +1,258 @@
+package simulation;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import characters.Manager;
+import characters.Player;
+import game.GameOptions;
+import game.GameRules;
+import game.Shop;
+import weather.SyntheticWeatherSource;
+
+// Headless Monte Carlo runs of the game's rules, for balance testing without playing a session per data
+// point:
+//
+//   java -cp <classpath> simulation.SimulationEngine [--careers=n] [--max-shifts=n] [--seed=n] [--threads=n]
+//                                                    [--strategy=spec] [--date=yyyy-mm-dd] [rule and price overrides]
+//
+// Each career plays shifts the way the game does: the PlayerStrategy (--strategy, see PlayerStrategies;
+// default drink-below:35, an energy drink where the game warns you're very tired) buys and uses items, then
+// the shift is worked at the weather's demand through GameRules and Player.workShift, with a performance
+// review every few shifts, until the player is fired or reaches --max-shifts. Weather comes from the
+// synthetic generator at a random location after every shift, like the game's randomizeWeather. GameRules
+// and Shop read their overrides (--hot-temp, --bribe, --price-energy-drink, ...) from the same arguments.
+//
+// Careers are split across a ForkJoinPool. Every career draws its weather from its own SplittableRandom,
+// seeded from the run's seed and the career's number, so the same seed gives the same report on any
+// number of threads, and career n sees the same weather under every strategy (which is what makes
+// Tournament's comparisons fair). Given several strategies, each career's weather is generated once and
+// every strategy plays it in turn.
+public class SimulationEngine {
+    private static final int CAREERS_PER_TASK = 1024;
+    private static final double START_LAT = 40.7128, START_LON = -74.0060; // the game starts in NY
+
+    private final GameRules rules;
+    private final Shop shop;
+    private final int maxShifts;
+    private final long epochHour; // hour the weather is sampled at, midnight UTC of the simulated day
+
+    public SimulationEngine(GameRules rules, Shop shop, int maxShifts, long epochHour) {
+        this.rules = rules;
+        this.shop = shop;
+        this.maxShifts = maxShifts;
+        this.epochHour = epochHour;
+    }
+
+    // Plays careers [from, to) under every strategy, returning one report per strategy
+    private class CareerTask extends RecursiveTask<SimulationReport[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<PlayerStrategy> strategies;
+        private final long seed;
+        private final long from, to;
+
+        CareerTask(List<PlayerStrategy> strategies, long seed, long from, long to) {
+            this.strategies = strategies;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationReport[] compute() {
+            if (to - from <= CAREERS_PER_TASK) {
+                SimulationReport[] reports = new SimulationReport[strategies.size()];
+                for (int s = 0; s < reports.length; s++) reports[s] = new SimulationReport();
+                Career career = new Career();
+                for (long i = from; i < to; i++) {
+                    career.weather.reset(careerSeed(seed, i));
+                    for (int s = 0; s < reports.length; s++) career.play(strategies.get(s), reports[s]);
+                }
+                return reports;
+            }
+            long mid = (from + to) >>> 1;
+            CareerTask left = new CareerTask(strategies, seed, from, mid);
+            left.fork();
+            SimulationReport[] reports = new CareerTask(strategies, seed, mid, to).compute();
+            SimulationReport[] leftReports = left.join();
+            for (int s = 0; s < reports.length; s++) reports[s].merge(leftReports[s]);
+            return reports;
+        }
+    }
+
+    // The weather a career sees, one entry per location: generated on first use from the career's random
+    // numbers, then replayed for every other strategy playing the same career. Generating it is most of the
+    // cost of a shift, so a tournament pays for it once rather than once per strategy.
+    private final class WeatherTape {
+        private SplittableRandom rng;
+        private double[] temps = new double[64];
+        private double[] pressures = new double[64];
+        private int generated;
+        private int position;
+        private final long[] hours = new long[1];
+        private final double[] temp = new double[1];
+        private final double[] pressure = new double[1];
+
+        void reset(long careerSeed) {
+            rng = new SplittableRandom(careerSeed);
+            generated = 0;
+        }
+
+        void rewind() { position = 0; }
+
+        // Moves to a new random location, like the game's randomizeWeather
+        void next() { position++; }
+
+        double temp() {
+            generate();
+            return temps[position];
+        }
+
+        double pressure() {
+            generate();
+            return pressures[position];
+        }
+
+        // First hour of a synthetic forecast for each location up to the current one, which is what the
+        // game reads; the first location is where the game starts
+        private void generate() {
+            while (generated <= position) {
+                double lat = generated == 0 ? START_LAT : -45 + rng.nextDouble() * 90;
+                double lon = generated == 0 ? START_LON : -90 + rng.nextDouble() * 180;
+                SyntheticWeatherSource.fill(lat, lon, epochHour, rng, hours, temp, pressure);
+                if (generated == temps.length) {
+                    temps = Arrays.copyOf(temps, generated * 2);
+                    pressures = Arrays.copyOf(pressures, generated * 2);
+                }
+                temps[generated] = temp[0];
+                pressures[generated] = pressure[0];
+                generated++;
+            }
+        }
+    }
+
+    // Plays one task's careers, one after another
+    private class Career {
+        private final Manager manager = new Manager("Boss", 40);
+        private final WeatherTape weather = new WeatherTape();
+
+        void play(PlayerStrategy strategy, SimulationReport report) {
+            Player player = new Player("Charlie Dotter");
+            double baseDemandFactor = 1.0;
+            weather.rewind();
+
+            while (player.getShiftsWorked() < maxShifts) {
+                double demandFactor = rules.demandFactor(baseDemandFactor, weather.temp(), weather.pressure());
+                act(strategy, player, demandFactor, report);
+                player.workShift(manager, demandFactor);
+
+                if (rules.isReviewDue(player)) {
+                    GameRules.Review review = rules.review(player, demandFactor);
+                    report.addReview(review);
+                    if (review.isFired()) {
+                        SimulationReport.Cause cause = review == GameRules.Review.FIRED_BROKE
+                            ? SimulationReport.Cause.FIRED_BROKE : SimulationReport.Cause.FIRED_BUSY;
+                        report.addCareer(cause, player.getShiftsWorked(), player.getMoney());
+                        return;
+                    }
+                    // The game skips straight to the next shift after a second chance, weather unchanged
+                    if (review == GameRules.Review.SECOND_CHANCE) continue;
+                }
+
+                weather.next();
+            }
+            report.addCareer(SimulationReport.Cause.COMPLETED, player.getShiftsWorked(), player.getMoney());
+        }
+
+        // Carry out the strategy's actions until it wants to work
+        private void act(PlayerStrategy strategy, Player player, double demandFactor, SimulationReport report) {
+            int untilReview = rules.reviewInterval - player.getShiftsWorked() % rules.reviewInterval;
+            for (int i = 0; i < PlayerStrategy.MAX_ACTIONS_PER_SHIFT; i++) {
+                PlayerStrategy.Action action = strategy.decide(new PlayerStrategy.Observation(player.snapshot(), demandFactor, untilReview, shop));
+                if (action.type == PlayerStrategy.Action.Type.WORK) return;
+                if (action.type == PlayerStrategy.Action.Type.BUY) {
+                    double price = shop.getPrice(action.item);
+                    if (shop.buy(player, action.item)) report.addPurchase(price);
+                } else {
+                    shop.use(player, action.item);
+                }
+            }
+        }
+    }
+
+    // Well-mixed seed for career n: consecutive careers mustn't get overlapping random streams
+    private static long careerSeed(long seed, long career) {
+        long z = seed + career * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public SimulationReport run(PlayerStrategy strategy, long careers, long seed, ForkJoinPool pool) {
+        return run(List.of(strategy), careers, seed, pool)[0];
+    }
+
+    // Every strategy plays the same careers; one report per strategy, in order
+    public SimulationReport[] run(List<PlayerStrategy> strategies, long careers, long seed, ForkJoinPool pool) {
+        return pool.invoke(new CareerTask(List.copyOf(strategies), seed, 0, careers));
+    }
+
+    // Engine for the options shared by the simulation and the tournament: --max-shifts, --date, and the
+    // rule and price overrides
+    static SimulationEngine fromOptions(GameOptions options) {
+        int maxShifts = Math.max(1, options.getInt("max-shifts", 1000));
+        return new SimulationEngine(new GameRules(options), new Shop(options), maxShifts, date(options).toEpochDay() * 24);
+    }
+
+    static LocalDate date(GameOptions options) {
+        LocalDate date = LocalDate.now(ZoneOffset.UTC);
+        if (options.has("date")) {
+            try {
+                date = LocalDate.parse(options.get("date", ""));
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid --date, using " + date);
+            }
+        }
+        return date;
+    }
+
+    public int getMaxShifts() { return maxShifts; }
+
+    public static void main(String[] args) {
+        GameOptions options = new GameOptions(args);
+        long careers = Math.max(1, options.getLong("careers", 100_000));
+        long seed = options.getLong("seed", System.nanoTime());
+        PlayerStrategy strategy;
+        try {
+            strategy = PlayerStrategies.parse(options.get("strategy", "drink-below:35"));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        SimulationEngine engine = fromOptions(options);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, options.getInt("threads", Runtime.getRuntime().availableProcessors())));
+
+        long start = System.nanoTime();
+        SimulationReport report;
+        try {
+            report = engine.run(strategy, careers, seed, pool);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Simulated with --seed=" + seed + " --date=" + LocalDate.ofEpochDay(engine.epochHour / 24) + " --max-shifts=" + engine.maxShifts + " --strategy=" + strategy.getName());
+        System.out.println(report);
+        System.out.println(String.format("%.2f s, %.0f careers/s, %.0f shifts/s on %d threads", seconds,
+            report.getCareers() / Math.max(seconds, 1e-9), report.getShifts() / Math.max(seconds, 1e-9), pool.getParallelism()));
+    }
+}
@@ -0,0 +1,111 @@
+package simulation;
+
+import game.GameRules;
+
+// Results of a batch of simulated careers: how each ended, how long it lasted and what the player had at
+// the end, plus how often each performance review outcome came up. Tasks fill their own report and merge
+// them, so merging has to be associative; every field is a count, sum or Distribution.
+public class SimulationReport {
+    public enum Cause {
+        COMPLETED,   // still employed after the maximum number of shifts
+        FIRED_BROKE, // fired at a review, couldn't afford the bribe
+        FIRED_BUSY   // fired at a review, demand too high for a bribe and too low for a second chance
+    }
+
+    private final long[] causes = new long[Cause.values().length];
+    private final long[] causeShifts = new long[Cause.values().length];
+    private final long[] reviews = new long[GameRules.Review.values().length];
+    private final Distribution careerLength = new Distribution();
+    private final Distribution finalMoney = new Distribution();
+    private long careers;
+    private long shifts;
+    private long purchases;
+    private double spent;
+
+    void addReview(GameRules.Review review) {
+        reviews[review.ordinal()]++;
+    }
+
+    void addPurchase(double price) {
+        purchases++;
+        spent += price;
+    }
+
+    void addCareer(Cause cause, int shiftsWorked, double money) {
+        causes[cause.ordinal()]++;
+        causeShifts[cause.ordinal()] += shiftsWorked;
+        careerLength.add(shiftsWorked);
+        finalMoney.add(money);
+        careers++;
+        shifts += shiftsWorked;
+    }
+
+    public void merge(SimulationReport other) {
+        for (int i = 0; i < causes.length; i++) {
+            causes[i] += other.causes[i];
+            causeShifts[i] += other.causeShifts[i];
+        }
+        for (int i = 0; i < reviews.length; i++) reviews[i] += other.reviews[i];
+        careerLength.merge(other.careerLength);
+        finalMoney.merge(other.finalMoney);
+        careers += other.careers;
+        shifts += other.shifts;
+        purchases += other.purchases;
+        spent += other.spent;
+    }
+
+    public long getCareers() { return careers; }
+    public long getShifts() { return shifts; }
+    public long getPurchases() { return purchases; }
+    public double getSpent() { return spent; }
+    public long getCount(Cause cause) { return causes[cause.ordinal()]; }
+    public long getCount(GameRules.Review review) { return reviews[review.ordinal()]; }
+    public Distribution getCareerLength() { return careerLength; }
+    public Distribution getFinalMoney() { return finalMoney; }
+
+    public double getFraction(Cause cause) {
+        return careers == 0 ? 0 : (double) causes[cause.ordinal()] / careers;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(careers).append(" careers, ").append(shifts).append(" shifts");
+        if (careers > 0) out.append(String.format(", %.1f items bought per career ($%.2f)", (double) purchases / careers, spent / careers));
+        out.append('\n');
+
+        out.append("\nHow careers ended:\n");
+        for (Cause cause : Cause.values()) {
+            long n = causes[cause.ordinal()];
+            out.append(String.format("  %-12s %6.2f%%", cause, 100.0 * getFraction(cause)));
+            if (n > 0) out.append(String.format("  (after %.1f shifts on average)", (double) causeShifts[cause.ordinal()] / n));
+            out.append('\n');
+        }
+
+        long totalReviews = 0;
+        for (long n : reviews) totalReviews += n;
+        out.append("\nPerformance reviews (").append(totalReviews).append("):\n");
+        for (GameRules.Review review : GameRules.Review.values()) {
+            out.append(String.format("  %-13s %6.2f%%%n", review, totalReviews == 0 ? 0 : 100.0 * reviews[review.ordinal()] / totalReviews));
+        }
+
+        out.append("\nCareer length (shifts): ").append(careerLength).append('\n');
+        appendHistogram(out, careerLength);
+        out.append("\nFinal money ($): ").append(finalMoney).append('\n');
+        appendHistogram(out, finalMoney);
+        return out.toString();
+    }
+
+    private static void appendHistogram(StringBuilder out, Distribution d) {
+        final int width = 40;
+        if (d.getCount() == 0) return;
+        Distribution.Histogram histogram = d.histogram(10);
+        long peak = 1;
+        for (long n : histogram.counts) peak = Math.max(peak, n);
+        for (int i = 0; i < histogram.bins(); i++) {
+            long n = histogram.counts[i];
+            out.append(String.format("  %10.1f | %-" + width + "s %d%n", histogram.lowerBound(i),
+                "#".repeat((int) Math.round((double) n / peak * width)), n));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import game.GameOptions;
+
+// Plays several strategies over the same careers and ranks them:
+//
+//   java -cp <classpath> simulation.Tournament [--strategies=spec,spec,...] [--careers=n] [--rank-by=money|survival|length]
+//                                              [--max-shifts=n] [--seed=n] [--threads=n] [--date=yyyy-mm-dd] [overrides]
+//
+// Every strategy plays the same careers: career n sees the same weather under each of them, so differences
+// come from the strategies rather than the luck of the draw. The careers are split across a ForkJoinPool
+// and each task plays its careers under every strategy, generating their weather once (see
+// SimulationEngine). Strategy specs are described in PlayerStrategies.
+public class Tournament {
+    public static final String DEFAULT_STRATEGIES = "work,drink-below:20,drink-below:35,drink-below:50,meth-below:10,"
+        + "name-tag-below:60,drink-below:35+name-tag-before-review:25";
+
+    public enum RankBy { MONEY, SURVIVAL, LENGTH }
+
+    public static class Entry {
+        public final PlayerStrategy strategy;
+        public final SimulationReport report;
+
+        Entry(PlayerStrategy strategy, SimulationReport report) {
+            this.strategy = strategy;
+            this.report = report;
+        }
+    }
+
+    private final SimulationEngine engine;
+
+    public Tournament(SimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    // Entries best first
+    public List<Entry> run(List<PlayerStrategy> strategies, long careers, long seed, RankBy rankBy, ForkJoinPool pool) {
+        SimulationReport[] reports = engine.run(strategies, careers, seed, pool);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < strategies.size(); i++) entries.add(new Entry(strategies.get(i), reports[i]));
+        entries.sort(comparator(rankBy));
+        return entries;
+    }
+
+    private static Comparator<Entry> comparator(RankBy rankBy) {
+        Comparator<Entry> money = Comparator.comparingDouble(e -> e.report.getFinalMoney().getMean());
+        Comparator<Entry> survival = Comparator.comparingDouble(e -> e.report.getFraction(SimulationReport.Cause.COMPLETED));
+        Comparator<Entry> length = Comparator.comparingDouble(e -> e.report.getCareerLength().getMean());
+        switch (rankBy) {
+            case SURVIVAL: return survival.thenComparing(money).reversed();
+            case LENGTH: return length.thenComparing(money).reversed();
+            default: return money.reversed();
+        }
+    }
+
+    public static String format(List<Entry> entries) {
+        StringBuilder out = new StringBuilder();
+        int width = "Strategy".length();
+        for (Entry e : entries) width = Math.max(width, e.strategy.getName().length());
+        out.append(String.format("%-4s  %-" + width + "s  %8s  %8s  %8s  %24s  %10s  %6s%n",
+            "Rank", "Strategy", "Employed", "Fired", "Shifts", "Final money (mean ± 95%)", "p10 money", "Items"));
+        int rank = 1;
+        for (Entry e : entries) {
+            SimulationReport r = e.report;
+            Distribution money = r.getFinalMoney();
+            double fired = 1 - r.getFraction(SimulationReport.Cause.COMPLETED);
+            out.append(String.format("%-4d  %-" + width + "s  %7.2f%%  %7.2f%%  %8.1f  %24s  %10.2f  %6.1f%n",
+                rank++, e.strategy.getName(), 100 * (1 - fired), 100 * fired, r.getCareerLength().getMean(),
+                String.format("$%.2f ± %.2f", money.getMean(), money.getMeanError()),
+                money.quantile(0.1), (double) r.getPurchases() / Math.max(1, r.getCareers())));
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) {
+        GameOptions options = new GameOptions(args);
+        long careers = Math.max(1, options.getLong("careers", 100_000));
+        long seed = options.getLong("seed", System.nanoTime());
+
+        List<PlayerStrategy> strategies = new ArrayList<>();
+        for (String spec : options.get("strategies", DEFAULT_STRATEGIES).split(",")) {
+            if (spec.isBlank()) continue;
+            try {
+                strategies.add(PlayerStrategies.parse(spec));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage() + ", leaving it out.");
+            }
+        }
+        if (strategies.isEmpty()) {
+            System.out.println("No strategies to play.");
+            System.exit(1);
+        }
+
+        RankBy rankBy = RankBy.MONEY;
+        try {
+            rankBy = RankBy.valueOf(options.get("rank-by", "money").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown --rank-by '" + options.get("rank-by", "") + "', ranking by money.");
+        }
+
+        SimulationEngine engine = SimulationEngine.fromOptions(options);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, options.getInt("threads", Runtime.getRuntime().availableProcessors())));
+
+        long start = System.nanoTime();
+        List<Entry> entries;
+        try {
+            entries = new Tournament(engine).run(strategies, careers, seed, rankBy, pool);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long shifts = 0;
+        for (Entry e : entries) shifts += e.report.getShifts();
+        System.out.println(strategies.size() + " strategies x " + careers + " careers, --seed=" + seed + " --max-shifts=" + engine.getMaxShifts()
+            + ", ranked by " + rankBy.name().toLowerCase() + "\n");
+        System.out.print(format(entries));
+        System.out.println(String.format("%n%.2f s, %.0f shifts/s on %d threads", seconds, shifts / Math.max(seconds, 1e-9), pool.getParallelism()));
+    }
+}
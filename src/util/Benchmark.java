@@ -0,0 +1,73 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.LongSupplier;
+
+// Timing for the main()-based benchmarks (weather.OpenMeteoBenchmark, game.SaveFormatBenchmark, ...). The
+// operation runs in batches: the first batch warms up the JIT and isn't counted, and the rest report the
+// mean and best time per operation and, where the JVM can count it, the heap allocated per operation.
+// Each operation returns a number that is folded into a sink, so the JIT can't drop the work as unused.
+public final class Benchmark {
+    private static volatile long sink;
+
+    public static final class Result {
+        public final double meanNanos; // per operation, over the timed batches
+        public final double bestNanos; // per operation, in the fastest batch
+        public final double bytes;     // allocated per operation, or -1 if the JVM doesn't say
+
+        Result(double meanNanos, double bestNanos, double bytes) {
+            this.meanNanos = meanNanos;
+            this.bestNanos = bestNanos;
+            this.bytes = bytes;
+        }
+    }
+
+    private Benchmark() {}
+
+    // Runs op batches x perBatch times (at least two batches, so one can warm up)
+    public static Result measure(int batches, int perBatch, LongSupplier op) {
+        batches = Math.max(2, batches);
+        perBatch = Math.max(1, perBatch);
+        long total = 0, best = Long.MAX_VALUE, allocated = 0;
+        boolean counted = true;
+        long fold = 0;
+        for (int b = 0; b < batches; b++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < perBatch; i++) fold += op.getAsLong();
+            long elapsed = System.nanoTime() - start;
+            long after = allocatedBytes();
+            if (b == 0) continue; // warm-up
+            total += elapsed;
+            best = Math.min(best, elapsed);
+            if (before < 0 || after < 0) counted = false;
+            else allocated += after - before;
+        }
+        sink += fold;
+        long ops = (long) (batches - 1) * perBatch;
+        return new Result((double) total / ops, (double) best / perBatch, counted ? (double) allocated / ops : -1);
+    }
+
+    // Bytes this thread has allocated so far, on JVMs that count them (HotSpot does); -1 otherwise
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // "12.3 KB", "1.2 MB", or "n/a" for an unknown allocation
+    public static String bytes(double bytes) {
+        if (bytes < 0) return "n/a";
+        if (bytes < 1024) return String.format("%.0f B", bytes);
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024);
+        return String.format("%.1f MB", bytes / (1024 * 1024));
+    }
+
+    // "850 ns", "12.3 us", "4.5 ms"
+    public static String nanos(double nanos) {
+        if (nanos < 1_000) return String.format("%.0f ns", nanos);
+        if (nanos < 1_000_000) return String.format("%.1f us", nanos / 1_000);
+        return String.format("%.1f ms", nanos / 1_000_000);
+    }
+}
@@ -0,0 +1,75 @@
+package util;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Fixed-capacity history that overwrites its oldest entry once full. Keeps long sessions from piling up
+// every response ever fetched. An optional callback sees each entry as it is evicted, e.g. to fold it
+// into running totals.
+public class RingBuffer<T> implements Iterable<T> {
+    private final Object[] items;
+    private final Consumer<? super T> onEvict;
+    private int head = 0; // index of the oldest entry
+    private int size = 0;
+
+    public RingBuffer(int capacity) {
+        this(capacity, null);
+    }
+
+    public RingBuffer(int capacity, Consumer<? super T> onEvict) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.items = new Object[capacity];
+        this.onEvict = onEvict;
+    }
+
+    public void add(T item) {
+        if (size < items.length) {
+            items[(head + size) % items.length] = item;
+            size++;
+            return;
+        }
+
+        // full: the oldest slot becomes the newest
+        T evicted = slot(head);
+        items[head] = item;
+        head = (head + 1) % items.length;
+        if (onEvict != null) onEvict.accept(evicted);
+    }
+
+    // Oldest entry is index 0, newest is size() - 1
+    public T get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        return slot((head + i) % items.length);
+    }
+
+    public T getLatest() {
+        return size == 0 ? null : slot((head + size - 1) % items.length);
+    }
+
+    public int size() { return size; }
+    public int capacity() { return items.length; }
+    public boolean isEmpty() { return size == 0; }
+
+    // Read-only, oldest-first view of the current contents; nothing is copied
+    public List<T> view() {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int i) { return RingBuffer.this.get(i); }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return view().iterator();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T slot(int i) {
+        return (T) items[i];
+    }
+}
@@ -0,0 +1,30 @@
+package weather;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Replays a saved Open-Meteo payload (e.g. external/openmeteo_api_response.txt) for every location.
+// The file is parsed once; every fetch hands back the same response.
+public class FixtureWeatherSource implements WeatherSource {
+    private final OpenMeteoResponse[] responses;
+    private int next = 0;
+
+    public FixtureWeatherSource(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            this.responses = OpenMeteoResponse.parseAll(in);
+        }
+        if (responses.length == 0 || responses[0].size() == 0) {
+            throw new IOException("No hourly forecast in " + file.getPath());
+        }
+    }
+
+    // Multi-location fixtures are handed out round-robin
+    @Override
+    public synchronized OpenMeteoResponse fetch(double lat, double lon) {
+        OpenMeteoResponse r = responses[next];
+        next = (next + 1) % responses.length;
+        return r;
+    }
+}
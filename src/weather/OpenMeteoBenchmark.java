@@ -0,0 +1,121 @@
+package weather;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import game.GameOptions;
+import util.Benchmark;
+
+// Times OpenMeteoResponse's streaming parse against the JsonNode tree parse it replaced:
+//
+//   java -cp <classpath> weather.OpenMeteoBenchmark [--hours=n,n,...] [--iterations=n] [--runs=n] [--seed=n]
+//
+// Each payload is a forecast of the given length in the format the game requests (fahrenheit, with surface
+// pressure), built from random weather. Both parsers read the same String, and their hours, temperatures and
+// pressures are compared before anything is timed. The streaming parse is also timed from the body's bytes,
+// which is how Weather feeds it an HTTP response (a String has to be copied into the parser first). The tree
+// parse is the one OpenMeteoResponse used before it streamed: a whole-document JsonNode tree, then one
+// WeatherData (with its time String) per hour.
+public class OpenMeteoBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    // The tree parse as it was, kept here as the baseline
+    static OpenMeteoResponse.WeatherData[] treeParse(String json) throws Exception {
+        JsonNode root = MAPPER.readTree(json);
+        JsonNode hourlyNode = root.path("hourly");
+        JsonNode times = hourlyNode.path("time");
+        JsonNode temps = hourlyNode.path("temperature_2m");
+        JsonNode pressures = hourlyNode.path("surface_pressure");
+        if (!times.isArray() || !temps.isArray() || !pressures.isArray()) return null;
+
+        int n = Math.max(times.size(), temps.size());
+        OpenMeteoResponse.WeatherData[] hourly = new OpenMeteoResponse.WeatherData[n];
+        for (int i = 0; i < n; i++) {
+            hourly[i] = new OpenMeteoResponse.WeatherData(times.get(i).asText(), temps.get(i).asDouble(), pressures.get(i).asDouble());
+        }
+        return hourly;
+    }
+
+    // A forecast of hours hours in Open-Meteo's layout
+    static String payload(int hours, SplittableRandom rng) {
+        StringBuilder time = new StringBuilder(), temp = new StringBuilder(), pressure = new StringBuilder();
+        LocalDateTime start = LocalDateTime.of(2025, 11, 17, 0, 0);
+        for (int i = 0; i < hours; i++) {
+            String sep = i == 0 ? "" : ",\n            ";
+            time.append(sep).append('"').append(HOUR.format(start.plusHours(i))).append('"');
+            temp.append(sep).append(Math.round((30 + rng.nextDouble() * 60) * 10) / 10.0);
+            pressure.append(sep).append(Math.round((990 + rng.nextDouble() * 40) * 10) / 10.0);
+        }
+        return "{\n    \"latitude\": 40.71,\n    \"longitude\": -74.01,\n    \"generationtime_ms\": 0.05,\n"
+            + "    \"utc_offset_seconds\": 0,\n    \"timezone\": \"GMT\",\n    \"timezone_abbreviation\": \"GMT\",\n    \"elevation\": 10,\n"
+            + "    \"hourly_units\": {\n        \"time\": \"iso8601\",\n        \"temperature_2m\": \"°F\",\n        \"surface_pressure\": \"hPa\"\n    },\n"
+            + "    \"hourly\": {\n        \"time\": [\n            " + time + "\n        ],\n"
+            + "        \"temperature_2m\": [\n            " + temp + "\n        ],\n"
+            + "        \"surface_pressure\": [\n            " + pressure + "\n        ]\n    }\n}\n";
+    }
+
+    // Null if the two parses agree, otherwise what differs
+    static String compare(OpenMeteoResponse.WeatherData[] tree, OpenMeteoResponse streamed) {
+        if (tree == null) return "tree parse found no forecast";
+        if (tree.length != streamed.size()) return tree.length + " hours from the tree, " + streamed.size() + " streamed";
+        for (int i = 0; i < tree.length; i++) {
+            long hour = LocalDateTime.parse(tree[i].time).toEpochSecond(ZoneOffset.UTC) / 3600;
+            if (hour != streamed.getEpochHour(i) || tree[i].temperature != streamed.getTemperature(i)
+                    || tree[i].pressure != streamed.getPressure(i)) {
+                return "hour " + i + " differs";
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        GameOptions options = new GameOptions(args);
+        int runs = Math.max(2, options.getInt("runs", 6));
+        long seed = options.getLong("seed", 1);
+        SplittableRandom rng = new SplittableRandom(seed);
+
+        System.out.println(String.format("%7s  %9s  %11s  %11s  %11s  %11s  %7s  %11s  %11s  %7s", "Hours", "Payload", "Tree",
+            "allocated", "Streamed", "allocated", "", "From body", "allocated", ""));
+        for (String h : options.get("hours", "24,168,384,2160").split(",")) {
+            int hours;
+            try {
+                hours = Math.max(1, Integer.parseInt(h.trim()));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid --hours entry '" + h + "', skipping it.");
+                continue;
+            }
+            String json = payload(hours, rng);
+            String mismatch = compare(treeParse(json), new OpenMeteoResponse(json));
+            if (mismatch != null) {
+                System.out.println(hours + " hours: parses differ, " + mismatch);
+                System.exit(2);
+            }
+
+            // About 20 MB of JSON per batch unless --iterations says otherwise
+            int iterations = Math.max(1, options.getInt("iterations", 20_000_000 / json.length()));
+            Benchmark.Result tree = Benchmark.measure(runs, iterations, () -> {
+                try {
+                    return treeParse(json).length;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Benchmark.Result streamed = Benchmark.measure(runs, iterations, () -> new OpenMeteoResponse(json).size());
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            Benchmark.Result fromBody = Benchmark.measure(runs, iterations, () -> new OpenMeteoResponse(new ByteArrayInputStream(body)).size());
+
+            System.out.println(String.format("%7d  %9s  %11s  %11s  %11s  %11s  %6.1fx  %11s  %11s  %6.1fx", hours,
+                Benchmark.bytes(body.length), Benchmark.nanos(tree.meanNanos), Benchmark.bytes(tree.bytes),
+                Benchmark.nanos(streamed.meanNanos), Benchmark.bytes(streamed.bytes), tree.meanNanos / streamed.meanNanos,
+                Benchmark.nanos(fromBody.meanNanos), Benchmark.bytes(fromBody.bytes), tree.meanNanos / fromBody.meanNanos));
+        }
+    }
+}
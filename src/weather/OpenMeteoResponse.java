@@ -1,10 +1,17 @@
 package weather;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
 
 // Jackson JSON library (provided by maven)
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class OpenMeteoResponse {
     public static class WeatherData {
@@ -19,63 +26,368 @@ public class OpenMeteoResponse {
         }
     }
 
+    // JsonFactory is thread-safe and expensive to build, so every response shares one
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Hourly forecast stored as parallel columns (hours since the epoch, UTC) instead of one object per hour.
+    // A response may be a view over [start, start + count) of columns shared with the response it came from.
+    private long[] epochHours;
+    private double[] temperatures;
+    private double[] pressures;
+    private int start;
+    private int count;
+
+    // True when every entry is exactly one hour after the previous, so lookups are a plain offset
+    private boolean regular;
+
+    // Materialized lazily by getHourly() for callers that still want row objects
     private WeatherData[] hourly;
 
     public OpenMeteoResponse(String json) {
         if (json == null) {
-            hourly = null;
             return;
         }
 
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(json);
-            JsonNode hourlyNode = root.path("hourly");
-            JsonNode times = hourlyNode.path("time");
-            JsonNode temps = hourlyNode.path("temperature_2m");
-            JsonNode pressures = hourlyNode.path("surface_pressure");
-
-            if (times.isArray() && temps.isArray() && pressures.isArray()) {
-                int n = Math.max(times.size(), temps.size());
-                hourly = new WeatherData[n];
-                for (int i = 0; i < n; i++) {
-                    String json_Time = times.get(i).asText();
-                    double json_Temp = temps.get(i).asDouble();
-                    double json_Pressure = pressures.get(i).asDouble();
-                    hourly[i] = new WeatherData(json_Time, json_Temp, json_Pressure);
+        try (JsonParser p = JSON.createParser(json)) {
+            parse(p);
+        } catch (Exception e) {
+            clear();
+        }
+    }
+
+    // Rebuild a response from stored columns (used by the on-disk cache and session logs)
+    public OpenMeteoResponse(long[] epochHours, double[] temperatures, double[] pressures) {
+        this.epochHours = epochHours;
+        this.temperatures = temperatures;
+        this.pressures = pressures;
+        this.count = Math.min(epochHours.length, Math.min(temperatures.length, pressures.length));
+        this.regular = isRegular(epochHours, count);
+    }
+
+    // Slice view sharing the parent's columns; no copying
+    private OpenMeteoResponse(OpenMeteoResponse parent, int from, int to) {
+        this.epochHours = parent.epochHours;
+        this.temperatures = parent.temperatures;
+        this.pressures = parent.pressures;
+        this.start = parent.start + from;
+        this.count = to - from;
+        this.regular = parent.regular;
+    }
+
+    // Parse straight from the HTTP body without buffering it into a String first
+    public OpenMeteoResponse(InputStream in) {
+        if (in == null) {
+            return;
+        }
+
+        try (JsonParser p = JSON.createParser(in)) {
+            parse(p);
+        } catch (Exception e) {
+            clear();
+        }
+    }
+
+    private OpenMeteoResponse() {}
+
+    // Parse a body that may hold one forecast object or, for multi-location requests, an array of them.
+    // Every location comes out of the same single pass over the stream.
+    public static OpenMeteoResponse[] parseAll(InputStream in) throws IOException {
+        ArrayList<OpenMeteoResponse> results = new ArrayList<>();
+        try (JsonParser p = JSON.createParser(in)) {
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.START_OBJECT) {
+                OpenMeteoResponse r = new OpenMeteoResponse();
+                r.parseObject(p);
+                results.add(r);
+            } else if (t == JsonToken.START_ARRAY) {
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    OpenMeteoResponse r = new OpenMeteoResponse();
+                    r.parseObject(p);
+                    results.add(r);
                 }
+            }
+        }
+        return results.toArray(new OpenMeteoResponse[0]);
+    }
+
+    private void parse(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            return;
+        }
+        parseObject(p);
+    }
+
+    // Reads one forecast object; the parser must be positioned on its START_OBJECT
+    private void parseObject(JsonParser p) throws IOException {
+        boolean celsius = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if ("hourly".equals(field) && p.currentToken() == JsonToken.START_OBJECT) {
+                parseHourly(p);
+            } else if ("hourly_units".equals(field) && p.currentToken() == JsonToken.START_OBJECT) {
+                celsius = parseCelsius(p);
             } else {
-                hourly = null;
+                p.skipChildren();
+            }
+        }
+
+        // We ask for fahrenheit, but saved payloads (like the one in external/) may be in celsius
+        if (celsius && temperatures != null) {
+            for (int i = 0; i < count; i++) temperatures[i] = temperatures[i] * 9 / 5 + 32;
+        }
+    }
+
+    private static boolean parseCelsius(JsonParser p) throws IOException {
+        boolean celsius = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if ("temperature_2m".equals(field)) celsius = p.getText().endsWith("C");
+            else p.skipChildren();
+        }
+        return celsius;
+    }
+
+    private void parseHourly(JsonParser p) throws IOException {
+        long[] times = null;
+        double[] temps = null;
+        double[] press = null;
+        int timeCount = 0, tempCount = 0, pressCount = 0;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            JsonToken t = p.nextToken();
+            if (t != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+
+            switch (field) {
+                case "time": {
+                    times = new long[168]; // default forecast length is 7 days of hours
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        if (timeCount == times.length) times = Arrays.copyOf(times, timeCount * 2);
+                        times[timeCount++] = parseEpochHour(p.getTextCharacters(), p.getTextOffset());
+                    }
+                    break;
+                }
+                case "temperature_2m": {
+                    temps = new double[168];
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        if (tempCount == temps.length) temps = Arrays.copyOf(temps, tempCount * 2);
+                        temps[tempCount++] = parseDouble(p);
+                    }
+                    break;
+                }
+                case "surface_pressure": {
+                    press = new double[168];
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        if (pressCount == press.length) press = Arrays.copyOf(press, pressCount * 2);
+                        press[pressCount++] = parseDouble(p);
+                    }
+                    break;
+                }
+                default: {
+                    p.skipChildren();
+                }
             }
-        } catch (Exception e) {
-            hourly = null;
         }
+
+        // Pressure is optional; without it the demand calculation just skips the pressure modifiers
+        if (times != null && temps != null && press == null) {
+            press = new double[timeCount];
+            Arrays.fill(press, Double.NaN);
+            pressCount = timeCount;
+        }
+
+        if (times != null && temps != null) {
+            epochHours = times;
+            temperatures = temps;
+            pressures = press;
+            count = Math.min(timeCount, Math.min(tempCount, pressCount));
+            regular = isRegular(times, count);
+        }
+    }
+
+    private static boolean isRegular(long[] times, int n) {
+        for (int i = 1; i < n; i++) {
+            if (times[i] != times[i - 1] + 1) return false;
+        }
+        return true;
+    }
+
+    private void clear() {
+        epochHours = null;
+        temperatures = null;
+        pressures = null;
+        start = 0;
+        count = 0;
+        regular = false;
+        hourly = null;
+    }
+
+    // Powers of ten that doubles hold exactly
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+    // The current number token's value. Forecasts are plain decimals like 12.6 or 1013.2, which are read
+    // straight from the parser's buffer: at most 15 digits make an exact integer, and dividing it by an exact
+    // power of ten rounds the same way Double.parseDouble does. Anything else (exponents, long fractions,
+    // nulls) goes through Jackson, which builds a String to parse.
+    private static double parseDouble(JsonParser p) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NUMBER_FLOAT || t == JsonToken.VALUE_NUMBER_INT) {
+            char[] c = p.getTextCharacters();
+            int off = p.getTextOffset(), end = off + p.getTextLength();
+            boolean negative = off < end && c[off] == '-';
+            long mantissa = 0;
+            int digits = 0, decimals = -1;
+            for (int i = negative ? off + 1 : off; i < end; i++) {
+                char ch = c[i];
+                if (ch >= '0' && ch <= '9') {
+                    mantissa = mantissa * 10 + (ch - '0');
+                    digits++;
+                    if (decimals >= 0) decimals++;
+                } else if (ch == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    digits = 99; // exponent: not a plain decimal
+                    break;
+                }
+            }
+            if (digits > 0 && digits <= 15 && decimals != 0) {
+                double value = decimals > 0 ? mantissa / POW10[decimals] : mantissa;
+                return negative ? -value : value;
+            }
+        }
+        return p.getValueAsDouble();
+    }
+
+    // Parses "yyyy-MM-ddTHH:mm" into hours since the epoch without allocating a date object
+    static long parseEpochHour(char[] c, int off) {
+        int y = digits(c, off, 4);
+        int m = digits(c, off + 5, 2);
+        int d = digits(c, off + 8, 2);
+        int h = digits(c, off + 11, 2);
+
+        // days-from-civil (proleptic Gregorian), see Howard Hinnant's date algorithms
+        y -= m <= 2 ? 1 : 0;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = (long) era * 146097 + doe - 719468;
+        return days * 24 + h;
+    }
+
+    private static int digits(char[] c, int off, int len) {
+        int v = 0;
+        for (int i = 0; i < len; i++) v = v * 10 + (c[off + i] - '0');
+        return v;
+    }
+
+    static String formatEpochHour(long epochHour) {
+        return LocalDateTime.ofEpochSecond(epochHour * 3600, 0, ZoneOffset.UTC).toString();
+    }
+
+    // Column accessors, for hot paths that don't want WeatherData objects
+    public int size() { return count; }
+    public long getEpochHour(int i) { return epochHours[start + i]; }
+    public double getTemperature(int i) { return temperatures[start + i]; }
+    public double getPressure(int i) { return pressures[start + i]; }
+
+    private WeatherData row(int i) {
+        return new WeatherData(formatEpochHour(getEpochHour(i)), getTemperature(i), getPressure(i));
+    }
+
+    // Index of the entry for an exact epoch hour, or -1 if the series doesn't contain it
+    public int indexOf(long epochHour) {
+        if (count == 0) return -1;
+        if (regular) {
+            long i = epochHour - epochHours[start];
+            return (i >= 0 && i < count) ? (int) i : -1;
+        }
+        int i = Arrays.binarySearch(epochHours, start, start + count, epochHour);
+        return i >= 0 ? i - start : -1;
+    }
+
+    // Index of the first entry at or after epochHour (size() if there is none)
+    private int lowerBound(long epochHour) {
+        if (count == 0) return 0;
+        if (regular) {
+            long i = epochHour - epochHours[start];
+            return (int) Math.max(0, Math.min(count, i));
+        }
+        int i = Arrays.binarySearch(epochHours, start, start + count, epochHour);
+        return (i >= 0 ? i : -i - 1) - start;
+    }
+
+    // Index of the entry nearest to the given instant, clamped to the ends of the series (-1 if empty)
+    public int indexAt(Instant instant) {
+        if (count == 0) return -1;
+        long hour = Math.floorDiv(instant.getEpochSecond() + 1800, 3600);
+        int i = lowerBound(hour);
+        if (i == count) return count - 1;
+        if (i > 0 && hour - getEpochHour(i - 1) <= getEpochHour(i) - hour) return i - 1;
+        return i;
+    }
+
+    // Forecast for the hour nearest to the given instant, or null if there's no data
+    public WeatherData getAt(Instant instant) {
+        int i = indexAt(instant);
+        return i < 0 ? null : row(i);
+    }
+
+    // Hours in [fromEpochHour, toEpochHour) as a view over this response's columns
+    public OpenMeteoResponse getRange(long fromEpochHour, long toEpochHour) {
+        int from = lowerBound(fromEpochHour);
+        int to = Math.max(from, lowerBound(toEpochHour));
+        return new OpenMeteoResponse(this, from, to);
+    }
+
+    public OpenMeteoResponse getRange(Instant from, Instant to) {
+        return getRange(Math.floorDiv(from.getEpochSecond(), 3600), Math.floorDiv(to.getEpochSecond() + 3599, 3600));
     }
 
     public String getTimePoints() {
         StringBuilder sb = new StringBuilder();
-        for (WeatherData data : hourly) {
-            sb.append(data.time).append("\n");
+        for (int i = 0; i < count; i++) {
+            sb.append(formatEpochHour(getEpochHour(i))).append("\n");
         }
         return sb.toString();
     }
 
     public WeatherData[] getHourly() {
+        if (hourly == null && epochHours != null) {
+            WeatherData[] rows = new WeatherData[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = row(i);
+            }
+            hourly = rows;
+        }
         return hourly;
     }
 
     public WeatherData[] getHourly(String timePoint) {
-        return Arrays.stream(hourly)
-              .filter(data -> data.time.equals(timePoint))
-              .toArray(WeatherData[]::new);
+        int i = -1;
+        if (timePoint != null && timePoint.length() == 16) {
+            try {
+                i = indexOf(parseEpochHour(timePoint.toCharArray(), 0));
+            } catch (RuntimeException e) {
+                i = -1;
+            }
+        }
+        // keep exact-string semantics: "2025-11-17T00:30" is not the 00:00 entry
+        if (i < 0 || !timePoint.endsWith(":00")) return new WeatherData[0];
+        return new WeatherData[] { row(i) };
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (WeatherData data : hourly) {
-            sb.append(data.time).append(": ").append(data.temperature).append("F, air pressure: ").append(data.pressure).append("hPa\n");
+        for (int i = 0; i < count; i++) {
+            sb.append(formatEpochHour(getEpochHour(i))).append(": ").append(getTemperature(i)).append("F, air pressure: ").append(getPressure(i)).append("hPa\n");
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package weather;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import http.ApiClient;
+
+// Live forecasts from the Open-Meteo API
+public class OpenMeteoSource implements WeatherSource {
+	private final ApiClient http;
+
+	public OpenMeteoSource() {
+		this(ApiClient.shared());
+	}
+
+	public OpenMeteoSource(ApiClient http) {
+		this.http = http;
+	}
+
+	@Override
+	public OpenMeteoResponse fetch(double lat, double lon) throws Exception {
+		// Parse the body as it streams in rather than copying it into a String first
+		try (InputStream in = http.get(urlFor(String.valueOf(lat), String.valueOf(lon)))) {
+			return new OpenMeteoResponse(in);
+		}
+	}
+
+	// Open-Meteo accepts comma-separated coordinate lists and answers with one forecast per location
+	@Override
+	public OpenMeteoResponse[] fetchBatch(double[] lats, double[] lons) throws Exception {
+		StringBuilder latList = new StringBuilder();
+		StringBuilder lonList = new StringBuilder();
+		for (int i = 0; i < lats.length; i++) {
+			if (i > 0) {
+				latList.append(',');
+				lonList.append(',');
+			}
+			latList.append(lats[i]);
+			lonList.append(lons[i]);
+		}
+
+		OpenMeteoResponse[] fetched;
+		try (InputStream in = http.get(urlFor(latList.toString(), lonList.toString()))) {
+			fetched = OpenMeteoResponse.parseAll(in);
+		}
+		if (fetched.length != lats.length) {
+			throw new IOException("Expected " + lats.length + " forecasts, got " + fetched.length);
+		}
+		return fetched;
+	}
+
+	@Override
+	public boolean isRemote() {
+		return true;
+	}
+
+	private static String urlFor(String lats, String lons) {
+		return String.format(
+			"https://api.open-meteo.com/v1/forecast?latitude=%s&longitude=%s&hourly=temperature_2m,surface_pressure&temperature_unit=fahrenheit",
+			lats, lons);
+	}
+}
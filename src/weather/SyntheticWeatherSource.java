@@ -0,0 +1,76 @@
+package weather;
+
+import java.util.SplittableRandom;
+
+// Seeded weather generator for running the game, simulations and benchmarks with no network at all.
+// Temperature (F) follows a latitude-dependent yearly cycle plus a daily cycle peaking mid-afternoon local
+// time, with a slowly wandering day-to-day anomaly. Pressure (hPa) is a mean-reverting random walk around
+// sea level with a small twice-daily tide. The same seed and location always give the same series.
+public class SyntheticWeatherSource implements WeatherSource {
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final int FORECAST_HOURS = 168; // matches Open-Meteo's default of 7 days
+
+    private final long seed;
+
+    public SyntheticWeatherSource(long seed) {
+        this.seed = seed;
+    }
+
+    // Forecast starting at midnight UTC today, like the live API
+    @Override
+    public OpenMeteoResponse fetch(double lat, double lon) {
+        long startHour = Math.floorDiv(System.currentTimeMillis() / 1000, 86400) * 24;
+        return generate(lat, lon, startHour, FORECAST_HOURS);
+    }
+
+    public OpenMeteoResponse generate(double lat, double lon, long startEpochHour, int hours) {
+        long[] epochHours = new long[hours];
+        double[] temps = new double[hours];
+        double[] press = new double[hours];
+        SplittableRandom rng = new SplittableRandom(mix(seed, lat, lon, startEpochHour));
+        fill(lat, lon, startEpochHour, rng, epochHours, temps, press);
+        return new OpenMeteoResponse(epochHours, temps, press);
+    }
+
+    // Fills the given columns with consecutive hours from startEpochHour. Allocation-free, so hot loops
+    // can reuse their arrays.
+    public static void fill(double lat, double lon, long startEpochHour, SplittableRandom rng,
+                            long[] epochHours, double[] temps, double[] press) {
+        double absLat = Math.abs(lat);
+        double annualMean = 80 - 0.6 * absLat;          // ~80F at the equator, ~53F at 45 degrees
+        double seasonalAmp = 0.45 * absLat;             // bigger seasons away from the equator
+        double dailyAmp = 7 + 0.1 * absLat;
+        double hemisphere = lat >= 0 ? 1 : -1;
+        double solarOffset = lon / 15.0;                // hours ahead of UTC by longitude
+
+        double tempAnomaly = rng.nextDouble(-6, 6);
+        double pressAnomaly = rng.nextDouble(-8, 8);
+
+        for (int i = 0; i < epochHours.length; i++) {
+            long hour = startEpochHour + i;
+            double dayOfYear = (hour / 24.0) % 365.2425;
+            double localHour = (hour % 24) + solarOffset;
+
+            // Warmest around July 20th in the north, January in the south
+            double seasonal = hemisphere * seasonalAmp * Math.cos(TWO_PI * (dayOfYear - 201) / 365.2425);
+            // Warmest around 3pm local time
+            double daily = dailyAmp * Math.cos(TWO_PI * (localHour - 15) / 24);
+
+            // AR(1) anomalies: weather fronts drift in over a day or two, then fade
+            tempAnomaly = 0.97 * tempAnomaly + rng.nextDouble(-1, 1);
+            pressAnomaly = 0.98 * pressAnomaly + rng.nextDouble(-1, 1);
+
+            epochHours[i] = hour;
+            temps[i] = annualMean + seasonal + daily + tempAnomaly;
+            press[i] = 1013.25 + pressAnomaly + 0.8 * Math.cos(TWO_PI * (localHour - 10) / 12);
+        }
+    }
+
+    private static long mix(long seed, double lat, double lon, long hour) {
+        long h = seed;
+        h = h * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(lat);
+        h = h * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(lon);
+        h = h * 0x9E3779B97F4A7C15L + hour;
+        return h;
+    }
+}
@@ -0,0 +1,31 @@
+package weather;
+
+// Running min/max/mean over every hourly temperature folded into it. Weather feeds it the forecasts that
+// fall out of its bounded history so long sessions keep the aggregates without keeping the responses.
+public class TemperatureSummary {
+    private long hours = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double sum = 0.0;
+
+    public void add(OpenMeteoResponse r) {
+        if (r == null) return;
+        for (int i = 0; i < r.size(); i++) {
+            double t = r.getTemperature(i);
+            if (hours == 0 || t < min) min = t;
+            if (hours == 0 || t > max) max = t;
+            sum += t;
+            hours++;
+        }
+    }
+
+    public long getHours() { return hours; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public double getMean() { return hours == 0 ? Double.NaN : sum / hours; }
+
+    @Override
+    public String toString() {
+        return String.format("%d hours, min %.1fF, max %.1fF, mean %.1fF", hours, min, max, getMean());
+    }
+}
@@ -1,66 +1,127 @@
 package weather;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
-
-// Weather class that handles the connection to the Open-Meteo API and passes the response to OpenMeteoResponse which parses it
+import java.util.List;
+
+import util.RingBuffer;
+
+// Weather class that keeps track of the current location and recent forecasts, getting new ones from a WeatherSource (the Open-Meteo API by default) through an optional cache
 public class Weather {
-	private String urlStr;
-	private ArrayList<OpenMeteoResponse> weatherResponses;
+	private double latitude;
+	private double longitude;
+	private final WeatherCache cache; // optional, may be null
+	private final WeatherSource source;
+	private final RingBuffer<OpenMeteoResponse> weatherResponses;
+	private final TemperatureSummary evictedSummary = new TemperatureSummary();
+
+	public static final int DEFAULT_HISTORY = 16;
 
 	public Weather(double arg_latitude, double arg_longitude) throws Exception {
-		this.urlStr = String.format(
-			"https://api.open-meteo.com/v1/forecast?latitude=%s&longitude=%s&hourly=temperature_2m,surface_pressure&temperature_unit=fahrenheit",
-			arg_latitude, arg_longitude);
+		this(arg_latitude, arg_longitude, null);
+	}
+
+	public Weather(double arg_latitude, double arg_longitude, WeatherCache cache) throws Exception {
+		this(arg_latitude, arg_longitude, cache, DEFAULT_HISTORY);
+	}
+
+	public Weather(double arg_latitude, double arg_longitude, WeatherCache cache, int historyCapacity) throws Exception {
+		this(new OpenMeteoSource(), arg_latitude, arg_longitude, cache, historyCapacity);
+	}
+
+	public Weather(WeatherSource source, double arg_latitude, double arg_longitude, WeatherCache cache, int historyCapacity) throws Exception {
+		this.source = source;
+		this.cache = cache;
+		setCoordinates(arg_latitude, arg_longitude);
 		
-		this.weatherResponses = new ArrayList<OpenMeteoResponse>();
+		// only the last few responses are kept; older ones are folded into evictedSummary
+		this.weatherResponses = new RingBuffer<OpenMeteoResponse>(historyCapacity, evictedSummary::add);
 		this.weatherResponses.add(getNewResponse());
 	}
 
 	public OpenMeteoResponse getLatestResponse() {
-		if (weatherResponses.isEmpty()) return null;
-		return weatherResponses.get(weatherResponses.size() - 1);
+		return weatherResponses.getLatest();
 	}
 
-	public ArrayList<OpenMeteoResponse> getAllResponses() {
-		return new ArrayList<OpenMeteoResponse>(weatherResponses);
+	// Oldest-first view of the retained responses (not a copy)
+	public List<OpenMeteoResponse> getAllResponses() {
+		return weatherResponses.view();
 	}
 
+	// Temperature aggregates over responses that have dropped out of the history
+	public TemperatureSummary getEvictedSummary() {
+		return evictedSummary;
+	}
+
+	// Fetch a forecast for the current coordinates and make it the latest response
 	public OpenMeteoResponse getNewResponse() throws Exception {
-		// Create connection and necessary abstractions
-		URL url = new URL(urlStr);
-		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-		int connStatus = conn.getResponseCode();
-		InputStream is = (connStatus >= 200 && connStatus < 300) ? conn.getInputStream() : conn.getErrorStream();
-		BufferedReader in = new BufferedReader(new InputStreamReader(is));
-		
-		// Read response
-		StringBuilder resp = new StringBuilder();
-		String line;
-		while ((line = in.readLine()) != null) {
-			resp.append(line).append('\n');
+		OpenMeteoResponse r = fetch(latitude, longitude);
+		weatherResponses.add(r);
+		return r;
+	}
+
+	// Record a response fetched elsewhere (e.g. by the prefetcher) as the latest one
+	public void addResponse(OpenMeteoResponse r) {
+		weatherResponses.add(r);
+	}
+
+	// Fetch a forecast for any location without touching this object's coordinates or history,
+	// so it is safe to call from background threads
+	public OpenMeteoResponse fetch(double lat, double lon) throws Exception {
+		// Nearby location already fetched this hour? Skip the round-trip
+		if (cache != null) {
+			OpenMeteoResponse cached = cache.get(lat, lon);
+			if (cached != null) return cached;
 		}
-		
-		// Close connections
-		in.close();
-		conn.disconnect();
+
+		OpenMeteoResponse r = source.fetch(lat, lon);
 
 		// Log output (only for debugging)
-		// System.out.println("HTTP " + connStatus);
-		// System.out.println("Response: " + resp.toString());
+		// System.out.println("Response: " + r);
 
-		OpenMeteoResponse r = new OpenMeteoResponse(resp.toString());
-		weatherResponses.add(r);
+		if (cache != null) cache.put(lat, lon, r);
 		return r;
 	}
 
+	// Fetch forecasts for several locations at once. Locations already in the cache are served from it
+	// and the rest go to the source in one batch (a single request for the live API).
+	// Results line up with the input arrays.
+	public OpenMeteoResponse[] fetchBatch(double[] lats, double[] lons) throws Exception {
+		if (lats.length != lons.length) throw new IllegalArgumentException("lats and lons must be the same length");
+
+		OpenMeteoResponse[] results = new OpenMeteoResponse[lats.length];
+		int[] missing = new int[lats.length];
+		int missingCount = 0;
+		for (int i = 0; i < lats.length; i++) {
+			results[i] = cache != null ? cache.get(lats[i], lons[i]) : null;
+			if (results[i] == null) missing[missingCount++] = i;
+		}
+		if (missingCount == 0) return results;
+
+		double[] missingLats = new double[missingCount];
+		double[] missingLons = new double[missingCount];
+		for (int j = 0; j < missingCount; j++) {
+			missingLats[j] = lats[missing[j]];
+			missingLons[j] = lons[missing[j]];
+		}
+
+		OpenMeteoResponse[] fetched = source.fetchBatch(missingLats, missingLons);
+		for (int j = 0; j < missingCount; j++) {
+			int i = missing[j];
+			results[i] = fetched[j];
+			if (cache != null) cache.put(lats[i], lons[i], fetched[j]);
+		}
+		return results;
+	}
+
+	public WeatherSource getSource() {
+		return source;
+	}
+
+	public WeatherCache getCache() {
+		return cache;
+	}
+
 	public void setCoordinates(double lat, double lon) {
-		this.urlStr = String.format(
-			"https://api.open-meteo.com/v1/forecast?latitude=%s&longitude=%s&hourly=temperature_2m,surface_pressure&temperature_unit=fahrenheit",
-			lat, lon);
+		this.latitude = lat;
+		this.longitude = lon;
 	}
 }
\ No newline at end of file
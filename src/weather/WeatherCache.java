@@ -0,0 +1,232 @@
+package weather;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Caches forecasts by rounded coordinates and the hour they were fetched in, so looking up a location
+// close to one we already fetched doesn't cost another HTTPS round-trip. Entries expire after a TTL, the
+// least recently used entry is dropped once the cache is full, and flush() writes everything to a small
+// binary file that the next run loads on startup.
+public class WeatherCache {
+    private static final int FILE_MAGIC = 0x57434331; // "WCC1"
+    private static final long MILLIS_PER_HOUR = 3600 * 1000L;
+
+    private static class Key {
+        final int latCell;
+        final int lonCell;
+        final long forecastHour;
+
+        Key(int latCell, int lonCell, long forecastHour) {
+            this.latCell = latCell;
+            this.lonCell = lonCell;
+            this.forecastHour = forecastHour;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return latCell == k.latCell && lonCell == k.lonCell && forecastHour == k.forecastHour;
+        }
+
+        @Override
+        public int hashCode() {
+            return (latCell * 31 + lonCell) * 31 + Long.hashCode(forecastHour);
+        }
+    }
+
+    private static class CachedResponse {
+        final OpenMeteoResponse response;
+        final long fetchedAt;
+
+        CachedResponse(OpenMeteoResponse response, long fetchedAt) {
+            this.response = response;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final double gridDegrees;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final File file;
+    private final LinkedHashMap<Key, CachedResponse> entries;
+    private boolean dirty = false;
+
+    // Statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    // Defaults: quarter-degree cells (~28km), one hour TTL, 256 entries
+    public WeatherCache(File file) {
+        this(file, 0.25, MILLIS_PER_HOUR, 256);
+    }
+
+    public WeatherCache(File file, double gridDegrees, long ttlMillis, int maxEntries) {
+        this.file = file;
+        this.gridDegrees = gridDegrees;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+
+        // access-ordered so iteration order is least to most recently used
+        this.entries = new LinkedHashMap<Key, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResponse> eldest) {
+                if (size() > WeatherCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        if (file != null && file.exists()) {
+            try {
+                load();
+            } catch (IOException e) {
+                System.out.println("Ignoring unreadable weather cache: " + e.getMessage());
+                entries.clear();
+            }
+        }
+    }
+
+    private Key keyFor(double lat, double lon, long now) {
+        return new Key((int) Math.round(lat / gridDegrees), (int) Math.round(lon / gridDegrees), now / MILLIS_PER_HOUR);
+    }
+
+    // Returns the cached forecast for this location and hour, or null on a miss
+    public synchronized OpenMeteoResponse get(double lat, double lon) {
+        long now = System.currentTimeMillis();
+        Key key = keyFor(lat, lon, now);
+        CachedResponse e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        if (now - e.fetchedAt > ttlMillis) {
+            entries.remove(key);
+            expirations++;
+            misses++;
+            dirty = true;
+            return null;
+        }
+        hits++;
+        return e.response;
+    }
+
+    public synchronized void put(double lat, double lon, OpenMeteoResponse response) {
+        if (response == null || response.size() == 0) return; // don't cache failed fetches
+        long now = System.currentTimeMillis();
+        entries.put(keyFor(lat, lon, now), new CachedResponse(response, now));
+        dirty = true;
+    }
+
+    // Write the cache to disk if it changed since the last flush; written to a temp file first so a
+    // crash can't leave a half-written cache behind
+    public synchronized void flush() throws IOException {
+        if (file == null || !dirty) return;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        long now = System.currentTimeMillis();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            int live = 0;
+            for (CachedResponse e : entries.values()) if (now - e.fetchedAt <= ttlMillis) live++;
+            out.writeInt(live);
+
+            // least recently used first, so reloading rebuilds the same LRU order
+            for (Map.Entry<Key, CachedResponse> me : entries.entrySet()) {
+                CachedResponse e = me.getValue();
+                if (now - e.fetchedAt > ttlMillis) continue;
+                Key k = me.getKey();
+                OpenMeteoResponse r = e.response;
+                int n = r.size();
+
+                out.writeInt(k.latCell);
+                out.writeInt(k.lonCell);
+                out.writeLong(k.forecastHour);
+                out.writeLong(e.fetchedAt);
+                out.writeInt(n);
+                // hours are almost always consecutive, so store the first one and small deltas
+                out.writeLong(n > 0 ? r.getEpochHour(0) : 0);
+                for (int i = 1; i < n; i++) out.writeShort((int) (r.getEpochHour(i) - r.getEpochHour(i - 1)));
+                for (int i = 0; i < n; i++) out.writeDouble(r.getTemperature(i));
+                for (int i = 0; i < n; i++) out.writeDouble(r.getPressure(i));
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+    private void load() throws IOException {
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) throw new IOException("bad magic");
+            int count = in.readInt();
+            for (int c = 0; c < count; c++) {
+                Key k = new Key(in.readInt(), in.readInt(), in.readLong());
+                long fetchedAt = in.readLong();
+                int n = in.readInt();
+
+                long[] hours = new long[n];
+                double[] temps = new double[n];
+                double[] press = new double[n];
+                long first = in.readLong();
+                if (n > 0) hours[0] = first;
+                for (int i = 1; i < n; i++) hours[i] = hours[i - 1] + in.readShort();
+                for (int i = 0; i < n; i++) temps[i] = in.readDouble();
+                for (int i = 0; i < n; i++) press[i] = in.readDouble();
+
+                if (now - fetchedAt <= ttlMillis) {
+                    entries.put(k, new CachedResponse(new OpenMeteoResponse(hours, temps, press), fetchedAt));
+                }
+            }
+        }
+    }
+
+    // Drop every expired entry now rather than waiting for a lookup to find it
+    public synchronized int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Iterator<CachedResponse> it = entries.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().fetchedAt > ttlMillis) {
+                it.remove();
+                removed++;
+            }
+        }
+        expirations += removed;
+        if (removed > 0) dirty = true;
+        return removed;
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getExpirations() { return expirations; }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("WeatherCache[size=%d/%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, expirations=%d]",
+            entries.size(), maxEntries, hits, misses, getHitRate(), evictions, expirations);
+    }
+}
@@ -0,0 +1,124 @@
+package weather;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps a small queue of forecasts for random locations ready in the background, so moving to new
+// weather between shifts is a queue poll instead of a blocking HTTPS call. Refills are batched into one
+// multi-location request and run on a dedicated pool of daemon threads. poll() returns null when
+// nothing is ready and the caller should fall back to a live fetch.
+public class WeatherPrefetcher {
+    private final Weather weather;
+    private final int capacity;
+    private final ArrayBlockingQueue<OpenMeteoResponse> ready;
+    private final ExecutorService executor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean running = true;
+
+    // Statistics
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong empty = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public WeatherPrefetcher(Weather weather, int capacity, int threads) {
+        this.weather = weather;
+        this.capacity = capacity;
+        this.ready = new ArrayBlockingQueue<>(capacity);
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "WeatherPrefetch-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        refill();
+    }
+
+    // Take the next ready forecast, or null if the queue ran dry
+    public OpenMeteoResponse poll() {
+        OpenMeteoResponse r = ready.poll();
+        if (r != null) served.incrementAndGet();
+        else empty.incrementAndGet();
+        refill();
+        return r;
+    }
+
+    // Fetch enough locations to fill the queue, all in one batched request
+    private void refill() {
+        while (running) {
+            int pending = inFlight.get();
+            int wanted = capacity - pending - ready.size();
+            if (wanted <= 0) return;
+            if (!inFlight.compareAndSet(pending, pending + wanted)) continue;
+
+            // Same coordinate ranges Game has always used for random weather
+            ThreadLocalRandom rng = ThreadLocalRandom.current();
+            double[] lats = new double[wanted];
+            double[] lons = new double[wanted];
+            for (int i = 0; i < wanted; i++) {
+                lats[i] = -45 + rng.nextDouble() * 90;
+                lons[i] = -90 + rng.nextDouble() * 180;
+            }
+
+            CompletableFuture<OpenMeteoResponse[]> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return weather.fetchBatch(lats, lons);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+            } catch (RejectedExecutionException e) {
+                inFlight.addAndGet(-wanted); // shut down underneath us
+                return;
+            }
+
+            future.whenComplete((batch, err) -> {
+                int queued = 0;
+                if (err == null) {
+                    for (OpenMeteoResponse r : batch) {
+                        if (r != null && r.size() > 0 && ready.offer(r)) queued++;
+                    }
+                }
+                // queue before releasing the slots so refill() never overshoots
+                inFlight.addAndGet(-wanted);
+                if (queued > 0) {
+                    refill();
+                } else {
+                    // don't retry straight away; the next poll() tries again
+                    failures.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int readyCount() { return ready.size(); }
+
+    @Override
+    public String toString() {
+        return String.format("WeatherPrefetcher[ready=%d/%d, inFlight=%d, served=%d, empty=%d, failures=%d]",
+            ready.size(), capacity, inFlight.get(), served.get(), empty.get(), failures.get());
+    }
+}
@@ -0,0 +1,21 @@
+package weather;
+
+// Where forecasts come from. Game only needs hourly temperature and pressure, so anything that can produce
+// an OpenMeteoResponse for a location will do: the live API, a saved payload, or a generated series.
+public interface WeatherSource {
+    OpenMeteoResponse fetch(double lat, double lon) throws Exception;
+
+    // Sources that can do better than one call per location (like the live API) override this
+    default OpenMeteoResponse[] fetchBatch(double[] lats, double[] lons) throws Exception {
+        OpenMeteoResponse[] results = new OpenMeteoResponse[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            results[i] = fetch(lats[i], lons[i]);
+        }
+        return results;
+    }
+
+    // Whether fetches go over the network (and so are worth caching and prefetching)
+    default boolean isRemote() {
+        return false;
+    }
+}